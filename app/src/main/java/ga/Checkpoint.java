@@ -0,0 +1,338 @@
+package ga;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * A saved population, read back with load() to resume a run.
+ *
+ * the file is memory mapped and holds a header and two slots. checkpoints go to the slots in turn and each one
+ * ends with a CRC, so if the JVM dies halfway through writing one the other slot still holds the one before it.
+ * a big population can take more than the 2GB one mapping reaches, so the file is mapped in chunks(see Mapping).
+ *
+ * header: magic, version, n, width, height, k, words per layout
+ * slot:   sequence(long), generation(int), epoch(int), seed(long), crc(long), then per factory by id:
+ *         fitness(double) and the layout's words(long each)
+ */
+final class Checkpoint {
+
+    private static final int MAGIC = 0x47414350;//GACP
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int SLOT_HEADER = 32;
+    private static final int CRC_OFFSET = 24;//within a slot
+
+    final int n;
+    final int width;
+    final int height;
+    final long sequence;
+    final int generation;
+    final long seed;//seed the random streams were split from for the generations after this one
+    final int epoch;//generations between those splits, 0 in files from before it was saved
+    final PackedLayout[] layouts;//by factory id
+    final double[] fitness;
+
+    private Checkpoint(int n, int width, int height, long sequence, int generation, long seed, int epoch, PackedLayout[] layouts, double[] fitness) {
+        this.n = n;
+        this.width = width;
+        this.height = height;
+        this.sequence = sequence;
+        this.generation = generation;
+        this.seed = seed;
+        this.epoch = epoch;
+        this.layouts = layouts;
+        this.fitness = fitness;
+    }
+
+    int getK() {
+        return layouts.length;
+    }
+
+    private static long slotSize(int k, int words) {
+        return SLOT_HEADER + (long) k * (8 + 8L * words);
+    }
+
+    /**
+     * A file mapped as consecutive chunks of up to 1GB, read and written at long offsets. every field in a
+     * checkpoint is 4 or 8 bytes at an offset that is a multiple of its size, so none of them straddles two chunks
+     */
+    private static final class Mapping {
+
+        private static final int CHUNK_BITS = 30;
+        private static final long CHUNK = 1L << CHUNK_BITS;
+
+        private final MappedByteBuffer[] chunks;
+
+        Mapping(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK - 1) >>> CHUNK_BITS)];
+            for (int c = 0; c < chunks.length; c++) {
+                long start = c * CHUNK;
+                chunks[c] = channel.map(mode, start, Math.min(CHUNK, size - start));
+            }
+        }
+
+        private MappedByteBuffer chunk(long pos) {
+            return chunks[(int) (pos >>> CHUNK_BITS)];
+        }
+
+        private static int offset(long pos) {
+            return (int) (pos & (CHUNK - 1));
+        }
+
+        int getInt(long pos) {
+            return chunk(pos).getInt(offset(pos));
+        }
+
+        void putInt(long pos, int value) {
+            chunk(pos).putInt(offset(pos), value);
+        }
+
+        long getLong(long pos) {
+            return chunk(pos).getLong(offset(pos));
+        }
+
+        void putLong(long pos, long value) {
+            chunk(pos).putLong(offset(pos), value);
+        }
+
+        double getDouble(long pos) {
+            return chunk(pos).getDouble(offset(pos));
+        }
+
+        void putDouble(long pos, double value) {
+            chunk(pos).putDouble(offset(pos), value);
+        }
+
+        /**
+         * adds bytes from to to(exclusive) to a crc, they may cross chunks
+         */
+        void update(CRC32 crc, long from, long to) {
+            while (from < to) {
+                MappedByteBuffer chunk = chunk(from);
+                int start = offset(from);
+                int end = (int) Math.min(chunk.capacity(), start + (to - from));
+                crc.update(chunk.duplicate().limit(end).position(start));
+                from += end - start;
+            }
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    /**
+     * reads the newest intact checkpoint in a file
+     * @param path - checkpoint file
+     * @return the checkpoint
+     * @throws IOException - if the file can't be read or holds no intact checkpoint
+     */
+    static Checkpoint load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException(path + " is not a checkpoint file");
+            }
+            Mapping buffer = new Mapping(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a checkpoint file");
+            }
+            int n = buffer.getInt(8);
+            int width = buffer.getInt(12);
+            int height = buffer.getInt(16);
+            int k = buffer.getInt(20);
+            int words = buffer.getInt(24);
+            long slotSize = slotSize(k, words);
+            if (channel.size() < HEADER + 2 * slotSize) {
+                throw new IOException(path + " is truncated");
+            }
+
+            long newest = -1;
+            long newestSequence = -1;
+            for (int s = 0; s < 2; s++) {
+                long slot = HEADER + s * slotSize;
+                long sequence = buffer.getLong(slot);
+                if (sequence > newestSequence && buffer.getLong(slot + CRC_OFFSET) == crc(buffer, slot, slotSize)) {
+                    newest = slot;
+                    newestSequence = sequence;
+                }
+            }
+            if (newest < 0) {
+                throw new IOException(path + " holds no intact checkpoint");
+            }
+
+            int generation = buffer.getInt(newest + 8);
+            int epoch = buffer.getInt(newest + 12);
+            long seed = buffer.getLong(newest + 16);
+            PackedLayout[] layouts = new PackedLayout[k];
+            double[] fitness = new double[k];
+            long pos = newest + SLOT_HEADER;
+            for (int i = 0; i < k; i++) {
+                fitness[i] = buffer.getDouble(pos);
+                pos += 8;
+                layouts[i] = new PackedLayout(width, height);
+                for (int w = 0; w < words; w++) {
+                    layouts[i].setWord(w, buffer.getLong(pos));
+                    pos += 8;
+                }
+            }
+            return new Checkpoint(n, width, height, newestSequence, generation, seed, epoch, layouts, fitness);
+        }
+    }
+
+    /**
+     * crc of a slot, everything but the crc field itself
+     */
+    private static long crc(Mapping buffer, long slot, long slotSize) {
+        CRC32 crc = new CRC32();
+        buffer.update(crc, slot, slot + CRC_OFFSET);
+        buffer.update(crc, slot + SLOT_HEADER, slot + slotSize);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes checkpoints on its own thread so the engine only hands over a finished generation(which holds its own
+     * copy of the population) and goes on. if the writer falls behind only the newest pending generation is written
+     */
+    static final class Writer implements Runnable {
+
+        private static final class Pending {
+            final Generation gen;
+            final long seed;
+            final int epoch;
+
+            Pending(Generation gen, long seed, int epoch) {
+                this.gen = gen;
+                this.seed = seed;
+                this.epoch = epoch;
+            }
+        }
+
+        private final FileChannel channel;
+        private final Mapping buffer;
+        private final int words;
+        private final long slotSize;
+        private final Thread thread;
+        private final AtomicReference<Pending> pending = new AtomicReference<>();
+        private volatile boolean closed;
+        private long sequence;
+        private int lastWritten;//generation number of the last checkpoint handed over
+
+        /**
+         * maps the file and starts the writer thread
+         * @param path      - checkpoint file
+         * @param n         - number of shapes
+         * @param width     - columns in a layout
+         * @param height    - rows in a layout
+         * @param k         - number of factories
+         * @param resumed   - checkpoint this run was resumed from if it is the same file, its slot is kept until overwritten. null starts the file over
+         * @throws IOException - if the file can't be mapped
+         */
+        Writer(Path path, int n, int width, int height, int k, Checkpoint resumed) throws IOException {
+            this.words = PackedLayout.wordsFor(width * height);
+            this.slotSize = slotSize(k, words);
+            long size = HEADER + 2 * slotSize;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (resumed == null) {
+                channel.truncate(0);//stale slots from another run must not look intact
+            } else {
+                sequence = resumed.sequence + 1;
+                lastWritten = resumed.generation;
+            }
+            buffer = new Mapping(channel, FileChannel.MapMode.READ_WRITE, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, n);
+            buffer.putInt(12, width);
+            buffer.putInt(16, height);
+            buffer.putInt(20, k);
+            buffer.putInt(24, words);
+
+            thread = new Thread(this, "checkpoint");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * hands a finished generation to the writer, never blocks
+         * @param gen   - generation to save
+         * @param seed  - seed the random streams are split from for the generations after it
+         * @param epoch - generations between splits
+         */
+        void offer(Generation gen, long seed, int epoch) {
+            lastWritten = gen.getGenNum();
+            pending.set(new Pending(gen, seed, epoch));
+            LockSupport.unpark(thread);
+        }
+
+        /**
+         * @return generation number of the last checkpoint handed over, so the engine doesn't save the same one twice
+         */
+        int getLastOffered() {
+            return lastWritten;
+        }
+
+        public void run() {
+            while (true) {
+                Pending p = pending.getAndSet(null);
+                if (p != null) {
+                    write(p);
+                } else if (closed) {
+                    p = pending.getAndSet(null);//offered right before close
+                    if (p != null) {
+                        write(p);
+                    }
+                    return;
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+
+        private void write(Pending p) {
+            try {
+                long slot = HEADER + (sequence & 1) * slotSize;
+                Population population = p.gen.getPopulation();
+                for (int id = 0; id < population.size; id++) {
+                    long pos = slot + SLOT_HEADER + id * (8 + 8L * words);
+                    buffer.putDouble(pos, population.fitness[id]);
+                    for (int w = 0; w < words; w++) {
+                        buffer.putLong(pos + 8 + 8 * w, population.layouts[id * words + w]);
+                    }
+                }
+                buffer.putLong(slot, sequence);
+                buffer.putInt(slot + 8, p.gen.getGenNum());
+                buffer.putInt(slot + 12, p.epoch);
+                buffer.putLong(slot + 16, p.seed);
+                buffer.putLong(slot + CRC_OFFSET, crc(buffer, slot, slotSize));//last, so a torn write fails the check
+                buffer.force();
+                sequence++;
+            } catch (RuntimeException e) {
+                System.out.println("CHECKPOINT ERROR: generation " + p.gen.getGenNum() + " not saved, " + e);
+            }
+        }
+
+        /**
+         * writes whatever is still pending and stops the writer thread
+         */
+        void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+                channel.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package ga;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Controller {
+
+    @FXML
+    Label fitnessLabel;
+
+    @FXML
+    Label currentGenLabel;
+
+    @FXML
+    Canvas factoryCanvas;
+
+    @FXML
+    Slider historySlider;//scrubs through the generation log once the run is done
+
+    private Path logFile;//every generation's best layout, see GenerationLog
+    private GenerationLog.Reader history;
+
+    //newest finished generation the display hasn't shown yet. the engine just overwrites it, so it never waits on
+    //the display and generations nobody had time to see are skipped(the log still has them)
+    private final AtomicReference<Generation> latest = new AtomicReference<>();
+
+    int m = 49;//max number of spaces for shapes to be placed, try to keep as a root so that a square gui can be made neatly
+    int n = 32;//The number of shapes
+    int k = 4;//The number of members of the population. When run on 32+ core server, k must be at least 32 for project
+
+    //images for the display
+    private Image zero = new Image(getClass().getResourceAsStream("0.png"));
+    private Image one = new Image(getClass().getResourceAsStream("1.png"));
+    private Image two = new Image(getClass().getResourceAsStream("2.png"));
+    private Image three = new Image(getClass().getResourceAsStream("3.png"));
+    //by station. empty spots are left white, and shapes a rules file adds past these are drawn as their code
+    private final Image[] stationImages = {zero, one, two, three};
+
+    //what is on the canvas right now, so a new layout only redraws the cells that changed
+    private int[] shown = new int[0];
+    private int shownWidth;
+    private int shownHeight;
+    private double cellSize;
+
+    //the final generation for last display
+    private final Generation[] fin = {null};
+
+    @FXML
+    public void initialize() {//blank white grid until the first generation comes in
+        GraphicsContext g = factoryCanvas.getGraphicsContext2D();
+        g.setFill(Color.WHITE);
+        g.fillRect(0, 0, factoryCanvas.getWidth(), factoryCanvas.getHeight());
+        historySlider.valueProperty().addListener((obs, old, now) -> {//whichever log is open, only once a run is done
+            if (history == null) {
+                return;
+            }
+            try {
+                GenerationLog.Record r = history.read(now.longValue());
+                setDisplay(r.generation, r.best, r.layout);
+            } catch (IOException e1) {
+                e1.printStackTrace();
+            }
+        });
+    }
+
+    public void startAlgorithm(ActionEvent e) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        int MAX = k * 100000;
+
+        //the engine does all the work, the controller only listens for finished generations
+        GaEngine engine = new GaEngine(n, m, k, MAX, System.nanoTime());
+        engine.setVerbose(true);
+        engine.addStopCondition(StopCondition.noImprovement(20000));//MAX is only the backstop, most runs plateau long before
+        engine.getMetrics().setQueueDepth(() -> latest.get() == null ? 0 : 1);
+        try {//the display skips generations it hasn't time for, the log keeps them for scrubbing afterwards
+            logFile = Files.createTempFile("ga", ".galog");
+            logFile.toFile().deleteOnExit();
+            engine.setLog(logFile);
+        } catch (IOException e1) {
+            e1.printStackTrace();
+        }
+        engine.setListener(latest::set);
+
+        //shows the newest generation on every frame there is one, runs on the fx thread
+        AnimationTimer displayer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                Generation gen = latest.getAndSet(null);
+                if (gen != null) {
+                    setDisplay(gen);
+                }
+            }
+        };
+
+        Runnable algorithm = () -> {
+            //save last gen for display
+            fin[0] = engine.run();
+            Platform.runLater(() -> {
+                displayer.stop();
+                latest.set(null);
+                if (fin[0] != null) {
+                    System.out.println("final display");
+                    setDisplay(fin[0]);
+                    openHistory();
+                }
+            });
+        };
+
+        displayer.start();
+        executor.execute(algorithm);
+        executor.shutdown();//only the one run, let the thread go when it's done
+    }
+
+    /**
+     * points the history slider at the finished run's log, dragging it shows the best layout of that generation
+     */
+    private void openHistory() {
+        closeHistory();//the last run's, if there was one
+        if (logFile == null) {
+            return;
+        }
+        try {
+            GenerationLog.Reader reader = new GenerationLog.Reader(logFile);
+            long size = reader.size();
+            if (size == 0) {
+                reader.close();
+                return;
+            }
+            historySlider.setMax(size - 1);
+            historySlider.setValue(size - 1);
+            historySlider.setBlockIncrement(1);
+            history = reader;
+            historySlider.setDisable(false);
+        } catch (IOException e1) {
+            e1.printStackTrace();
+        }
+    }
+
+    /**
+     * closes the log the history slider reads from, when it's replaced or the window goes away
+     */
+    public void closeHistory() {
+        historySlider.setDisable(true);
+        if (history == null) {
+            return;
+        }
+        try {
+            history.close();
+        } catch (IOException e1) {
+            e1.printStackTrace();
+        }
+        history = null;
+    }
+
+    /**
+     * sets GUI with given information
+     *
+     * @param gen - generation to show in display
+     */
+    private void setDisplay(Generation gen) {
+        setDisplay(gen.getGenNum(), gen.getBest().getFitness(), gen.getBest().getLayout());
+    }
+
+    /**
+     * @param genNum  - generation number to show
+     * @param fitness - fitness to show
+     * @param layout  - layout to draw
+     */
+    private void setDisplay(int genNum, double fitness, PackedLayout layout) {
+        currentGenLabel.setText(String.valueOf(genNum));
+        fitnessLabel.setText(String.valueOf(fitness));
+        GraphicsContext g = factoryCanvas.getGraphicsContext2D();
+        int width = layout.getWidth();
+        int height = layout.getHeight();
+        if (width != shownWidth || height != shownHeight) {//new size, start from a blank canvas
+            shownWidth = width;
+            shownHeight = height;
+            shown = new int[width * height];
+            Arrays.fill(shown, -1);
+            cellSize = Math.min(50, Math.min(factoryCanvas.getWidth(), factoryCanvas.getHeight()) / Math.max(width, height));//shrink big layouts to fit
+            g.setFill(Color.WHITE);
+            g.fillRect(0, 0, factoryCanvas.getWidth(), factoryCanvas.getHeight());
+        }
+        for (int cell = 0; cell < shown.length; cell++) {
+            int station = layout.getCell(cell);
+            if (station != shown[cell]) {
+                shown[cell] = station;
+                double x = (cell % width) * cellSize;
+                double y = (cell / width) * cellSize;
+                g.setFill(Color.WHITE);//the images aren't all opaque, don't let the old station show through
+                g.fillRect(x, y, cellSize, cellSize);
+                if (station == Fitness.EMPTY) {
+                    continue;
+                }
+                if (station < stationImages.length) {
+                    g.drawImage(stationImages[station], x, y, cellSize, cellSize);
+                } else {//a shape with no image, a gray tile with its code
+                    g.setFill(Color.LIGHTGRAY);
+                    g.fillRect(x + 1, y + 1, cellSize - 2, cellSize - 2);
+                    g.setFill(Color.BLACK);
+                    g.fillText(String.valueOf(station), x + cellSize * 0.35, y + cellSize * 0.65, cellSize);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package ga;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+/**
+ * Scoring for factory layouts.
+ *
+ * metric is basically +1 for flat sides touching ie square next to square, the rules themselves are in
+ * fitness.rules(see FitnessRules) so they can be changed without touching the kernels
+ * fitness:    add up for each position and normalize between 0 and 1(but not reaching either)
+ * triangle(0): +1 for square or either triangle bellow it, +1 for each upside-down triangle on side
+ * upside-down triangle(1): +1 for square or triangle above it, +1 for each triangle on sides
+ * square(2): +1 if square or triangle above or square or reverse triangle bellow, +1 for each square next to it
+ * circle(3): +5 if nothing borders it
+ * 4 is empty space and is ignored by fitness
+ *
+ * A station's score only depends on itself and its 4 neighbours, so changing one station can only change the
+ * scores of that station and the ones touching it. neighbourhoodScore is what the delta evaluation in
+ * ShapeFactory uses to rescore a mutation without walking the whole layout.
+ */
+final class Fitness {
+
+    /**
+     * when set(-Dga.verifyFitness=true) every delta evaluated fitness is checked against a full recompute
+     */
+    static final boolean VERIFY = Boolean.getBoolean("ga.verifyFitness");
+
+    static final int EMPTY = 4;
+
+    /**
+     * the plain java kernel, always available
+     */
+    static final FitnessKernel SCALAR = Fitness::scalarRawScore;
+
+    //adjacency rules every kernel scores with, from -Dga.fitnessRules or useRules
+    private static volatile FitnessRules rules = FitnessRules.load();
+
+    //row buffers for the whole layout kernels, one set per thread since factories score concurrently
+    private static final ThreadLocal<byte[][]> ROWS = ThreadLocal.withInitial(() -> new byte[3][0]);
+
+    //kernel used for whole layout scores, picked with -Dga.fitnessKernel=scalar|vector or useKernel
+    private static volatile FitnessKernel kernel = loadKernel(System.getProperty("ga.fitnessKernel", "scalar"));
+
+    private Fitness() {
+    }
+
+    /**
+     * @param layout - layout to score
+     * @return raw(un-normalized) score of the whole layout, from whichever kernel is in use
+     */
+    static int rawScore(PackedLayout layout) {
+        return kernel.rawScore(layout);
+    }
+
+    /**
+     * switch the kernel used for whole layout scores
+     * @param name - scalar or vector
+     * @return false if the vector kernel was asked for but isn't available(falls back to scalar)
+     */
+    static boolean useKernel(String name) {
+        kernel = loadKernel(name);
+        return !name.equalsIgnoreCase("vector") || kernel != SCALAR;
+    }
+
+    /**
+     * switch the adjacency rules, only between runs. the vector kernel is reloaded since it builds its tables from them
+     * @param newRules - compiled rules, see FitnessRules
+     */
+    static void useRules(FitnessRules newRules) {
+        rules = newRules;
+        if (kernel != SCALAR) {
+            kernel = loadKernel("vector");
+        }
+    }
+
+    static FitnessRules getRules() {
+        return rules;
+    }
+
+    /**
+     * the vector kernel needs --add-modules jdk.incubator.vector, so it is only loaded by name when asked for and
+     * anything missing falls back to the scalar kernel
+     */
+    static FitnessKernel loadKernel(String name) {
+        if (name.equalsIgnoreCase("vector")) {
+            try {
+                return (FitnessKernel) Class.forName("ga.VectorFitness").getDeclaredConstructor().newInstance();
+            } catch (InvocationTargetException e) {//it loaded but can't run here, ie vectors too narrow
+                System.out.println("vector fitness kernel unavailable, using scalar: " + e.getCause().getMessage());
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("vector fitness kernel unavailable(run with --add-modules jdk.incubator.vector), using scalar: " + e);
+            }
+        } else if (!name.equalsIgnoreCase("scalar")) {
+            throw new IllegalArgumentException("unknown fitness kernel " + name);
+        }
+        return SCALAR;
+    }
+
+    /**
+     * scores the layout a row at a time, rows are unpacked into byte buffers padded with an empty station on every
+     * side so the inner loop is a straight walk over three arrays with no bounds checks or per station lookups.
+     * left, station and right slide along the row as one 9 bit window, which is the top of the neighbourhood index
+     * @param layout - layout to score
+     * @return raw(un-normalized) score of the whole layout
+     */
+    static int scalarRawScore(PackedLayout layout) {
+        byte[] table = rules.neighbourhood;
+        int width = layout.getWidth();
+        int height = layout.getHeight();
+        byte[][] rows = rows(width);
+        byte[] below = rows[0];
+        byte[] row = rows[1];
+        byte[] above = rows[2];
+        Arrays.fill(below, (byte) EMPTY);//nothing below the bottom row
+        fillRow(layout, 0, row);
+
+        int score = 0;
+        for (int y = 0; y < height; y++) {
+            fillRow(layout, y + 1, above);
+            int window = row[0] << 3 | row[1];
+            for (int x = 1; x <= width; x++) {
+                window = (window << 3 | row[x + 1]) & 0x1FF;//left, station, right
+                score += table[window << 6 | below[x] << 3 | above[x]];
+            }
+            byte[] temp = below;//roll the buffers up a row
+            below = row;
+            row = above;
+            above = temp;
+        }
+        return score;
+    }
+
+    /**
+     * @param width - stations in a row
+     * @return this thread's three row buffers, width + 2 long. their contents are whatever the last caller left
+     */
+    static byte[][] rows(int width) {
+        byte[][] rows = ROWS.get();
+        if (rows[0].length != width + 2) {
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width + 2];
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * unpacks row y into buffer[1..width], everything else in the buffer is empty
+     */
+    static void fillRow(PackedLayout layout, int y, byte[] buffer) {
+        buffer[0] = EMPTY;
+        buffer[buffer.length - 1] = EMPTY;
+        if (y < layout.getHeight()) {
+            layout.readRow(y, buffer, 1);
+        } else {
+            Arrays.fill(buffer, (byte) EMPTY);//nothing above the top row
+        }
+    }
+
+    /**
+     * @return raw score of the station at x,y plus the stations bordering it
+     */
+    static int neighbourhoodScore(PackedLayout layout, int x, int y) {
+        FitnessRules r = rules;
+        int score = cellScore(r, layout, x, y);
+        if (x != 0) {
+            score += cellScore(r, layout, x - 1, y);
+        }
+        if (y != 0) {
+            score += cellScore(r, layout, x, y - 1);
+        }
+        if (x != layout.getWidth() - 1) {
+            score += cellScore(r, layout, x + 1, y);
+        }
+        if (y != layout.getHeight() - 1) {
+            score += cellScore(r, layout, x, y + 1);
+        }
+        return score;
+    }
+
+    /**
+     * @return raw score earned by the single station at x,y
+     */
+    static int cellScore(FitnessRules r, PackedLayout layout, int x, int y) {
+        return r.score(layout.get(x, y), stationAt(layout, x - 1, y), stationAt(layout, x + 1, y),
+                stationAt(layout, x, y - 1), stationAt(layout, x, y + 1));
+    }
+
+    /**
+     * @return the station at x,y, or empty if that is off the edge of the layout
+     */
+    private static int stationAt(PackedLayout layout, int x, int y) {
+        if (x < 0 || y < 0 || x >= layout.getWidth() || y >= layout.getHeight()) {
+            return EMPTY;
+        }
+        return layout.get(x, y);
+    }
+
+    /**
+     * score of one station given its neighbours, off the edge counts as empty
+     */
+    static int score(int station, int left, int right, int below, int above) {
+        return rules.score(station, left, right, below, above);
+    }
+
+    /*
+    normalized between 0 and 1. 168 was the max used for the 7x7 square, which is unreachable with my metrics while
+    also being within reason, so other sizes keep the same 168/49 per station
+     */
+    static double normalize(int rawScore, int stations) {
+        return rawScore * 49.0 / (168.0 * stations);
+    }
+}
@@ -0,0 +1,131 @@
+package ga;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded raw score cache shared by every factory, keyed by PackedLayout's Zobrist hash.
+ *
+ * the table is 4 way set associative, a hash can only live in the 4 slots of its set. each set runs its own CLOCK:
+ * a hit sets the slot's reference bit, and an insert into a full set walks the set's hand clearing reference bits
+ * until it finds a slot that hasn't been hit since the hand last passed, so eviction is at most 8 steps.
+ *
+ * there are no locks. a slot is two longs, the key and the score packed with the top half of the key as a check,
+ * so a reader that races a writer on the same slot sees a mismatch and treats it as a miss. the reference bits and
+ * hands are plain bytes, a lost update there only makes eviction slightly less accurate.
+ * 64 bit hashes can collide, -Dga.verifyFitness=true cross checks every score that came from the cache
+ */
+final class FitnessCache {
+
+    static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int WAYS = 4;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray values;//check(top 32 bits of the key) << 32 | raw score
+    private final byte[] referenced;
+    private final byte[] hands;//per set
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param entries - how many scores to keep, rounded up to a power of two
+     */
+    FitnessCache(int entries) {
+        int size = entries <= WAYS ? WAYS : Integer.highestOneBit(entries - 1) << 1;
+        keys = new AtomicLongArray(size);
+        values = new AtomicLongArray(size);
+        referenced = new byte[size];
+        hands = new byte[size / WAYS];
+        mask = size - 1;
+    }
+
+    /**
+     * @param hash - zobrist hash of a layout
+     * @return its raw score, or MISSING
+     */
+    int get(long hash) {
+        int set = (int) hash & mask & -WAYS;
+        for (int i = set; i < set + WAYS; i++) {
+            if (keys.getAcquire(i) == hash) {
+                long value = values.getAcquire(i);
+                if ((int) (value >>> 32) == (int) (hash >>> 32)) {
+                    if (referenced[i] == 0) {//only write when it changes, keeps the line from bouncing between cores
+                        referenced[i] = 1;
+                    }
+                    hits.increment();
+                    return (int) value;
+                }
+            }
+        }
+        misses.increment();
+        return MISSING;
+    }
+
+    /**
+     * @param hash - zobrist hash of a layout
+     * @param raw  - its raw score
+     */
+    void put(long hash, int raw) {
+        if (hash == 0) {//0 is reserved to mark an empty slot, a layout that hashes to it is never cached
+            return;
+        }
+        int set = (int) hash & mask & -WAYS;
+        int slot = -1;
+        for (int i = set; i < set + WAYS; i++) {
+            long key = keys.getAcquire(i);
+            if (key == hash || key == 0) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot < 0) {//set is full, run its clock
+            int hand = hands[set / WAYS];
+            for (int step = 0; step < 2 * WAYS; step++) {
+                int i = set + hand;
+                hand = (hand + 1) & (WAYS - 1);
+                if (referenced[i] == 0) {
+                    slot = i;
+                    break;
+                }
+                referenced[i] = 0;
+            }
+            if (slot < 0) {//every slot got hit again while the hand went round
+                slot = set + hand;
+            }
+            hands[set / WAYS] = (byte) hand;
+            evictions.increment();
+        }
+        referenced[slot] = 0;
+        values.setRelease(slot, (hash >>> 32) << 32 | (raw & 0xFFFFFFFFL));
+        keys.setRelease(slot, hash);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return fraction of lookups that were hits, 0 if there were none
+     */
+    double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,14 @@
+package ga;
+
+/**
+ * Something that can score a whole layout, see Fitness for the scalar kernel and VectorFitness for the SIMD one.
+ * every kernel has to give exactly the same score as Fitness.score summed over the layout
+ */
+interface FitnessKernel {
+
+    /**
+     * @param layout - layout to score
+     * @return raw(un-normalized) score of the whole layout
+     */
+    int rawScore(PackedLayout layout);
+}
@@ -0,0 +1,243 @@
+package ga;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The adjacency rules Fitness scores with, read from a small rules file(see fitness.rules for the format) and
+ * compiled into flat tables: pair[station << 5 | direction << 3 | neighbour] for the four sides and
+ * isolated[station] for stations with nothing but empty around them.
+ *
+ * those are then folded into one byte per neighbourhood, indexed by all five 3 bit codes(32KB), so scoring a
+ * station is a single lookup with no branches.
+ *
+ * a rules file can name any of the 8 codes a station fits in. 4 is always empty, every other code it names is a
+ * shape, and the GA only places the shapes the loaded rules name(randomShape, randomStation). so adding a shape
+ * is a station line and its scores, no code change
+ */
+final class FitnessRules {
+
+    static final int CODES = 8;
+    static final int LEFT = 0;
+    static final int RIGHT = 1;
+    static final int BELOW = 2;//y - 1
+    static final int ABOVE = 3;//y + 1
+    static final int MAX_SCORE = 25;//5 of them still fit in a byte, which the vector kernel adds in
+
+    private static final String[] DIRECTIONS = {"left", "right", "below", "above"};
+
+    final int[] pair = new int[CODES * 4 * CODES];
+    final int[] isolated = new int[CODES];
+    //left << 12 | station << 9 | right << 6 | below << 3 | above, a row's left, station, right are a sliding window
+    final byte[] neighbourhood = new byte[1 << 15];
+    private final String source;
+    private int[] stations;//every code the rules name, empty included, ascending
+    private int[] shapes;//the same without empty
+
+    private FitnessRules(String source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the rules named by -Dga.fitnessRules, or the fitness.rules that comes with the program
+     */
+    static FitnessRules load() {
+        String path = System.getProperty("ga.fitnessRules");
+        try {
+            if (path != null) {
+                return load(Paths.get(path));
+            }
+            try (InputStream in = FitnessRules.class.getResourceAsStream("fitness.rules")) {
+                if (in == null) {
+                    throw new IllegalStateException("fitness.rules is missing from the classpath");
+                }
+                return parse(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), "fitness.rules");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't read fitness rules " + (path != null ? path : "fitness.rules"), e);
+        }
+    }
+
+    /**
+     * @param path - rules file
+     * @return the compiled rules
+     * @throws IOException - if the file can't be read
+     */
+    static FitnessRules load(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(in, path.toString());
+        }
+    }
+
+    /**
+     * @param in     - rules, one per line
+     * @param source - where they came from, for error messages
+     * @return the compiled rules
+     * @throws IOException - if reading fails
+     * @throws IllegalArgumentException - if a line doesn't make sense
+     */
+    static FitnessRules parse(BufferedReader in, String source) throws IOException {
+        FitnessRules rules = new FitnessRules(source);
+        Map<String, Integer> stations = new HashMap<>();
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            int comment = line.indexOf('#');
+            String[] words = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            String where = source + " line " + number + ": ";
+            if (words[0].equals("station")) {
+                if (words.length != 3) {
+                    throw new IllegalArgumentException(where + "expected station <code> <name>");
+                }
+                int code = parseInt(words[1], where);
+                if (code < 0 || code >= CODES) {
+                    throw new IllegalArgumentException(where + "station codes go from 0 to " + (CODES - 1));
+                }
+                if ((code == Fitness.EMPTY) != words[2].equals("empty")) {
+                    throw new IllegalArgumentException(where + "code " + Fitness.EMPTY + " has to be the one called empty");
+                }
+                if (stations.containsValue(code) || stations.containsKey(words[2])) {
+                    throw new IllegalArgumentException(where + "code " + code + " or name " + words[2] + " is already taken");
+                }
+                stations.put(words[2], code);
+                continue;
+            }
+            int station = station(stations, words[0], where);
+            if (words.length == 3 && words[1].equals("isolated")) {
+                rules.isolated[station] += score(words[2], where);
+                continue;
+            }
+            if (words.length != 4) {
+                throw new IllegalArgumentException(where + "expected <station> <direction> <neighbours> <score> or <station> isolated <score>");
+            }
+            int direction = -1;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                if (DIRECTIONS[d].equals(words[1])) {
+                    direction = d;
+                }
+            }
+            if (direction < 0) {
+                throw new IllegalArgumentException(where + "unknown direction " + words[1] + ", use left, right, below or above");
+            }
+            int score = score(words[3], where);
+            for (String neighbour : words[2].split(",")) {
+                rules.pair[station << 5 | direction << 3 | station(stations, neighbour, where)] += score;
+            }
+        }
+        if (!stations.containsValue(Fitness.EMPTY)) {
+            throw new IllegalArgumentException(source + ": no station " + Fitness.EMPTY + " empty");
+        }
+        if (stations.size() < 2) {
+            throw new IllegalArgumentException(source + ": no shapes, name at least one station besides empty");
+        }
+        rules.stations = new int[stations.size()];
+        rules.shapes = new int[stations.size() - 1];
+        int named = 0;
+        int shapes = 0;
+        for (int code = 0; code < CODES; code++) {
+            if (stations.containsValue(code)) {
+                rules.stations[named++] = code;
+                if (code != Fitness.EMPTY) {
+                    rules.shapes[shapes++] = code;
+                }
+            }
+        }
+        for (int i = 0; i < rules.pair.length; i++) {//repeated lines could have added up past the limit
+            checkRange(rules.pair[i], source);
+        }
+        for (int s : rules.isolated) {
+            checkRange(s, source);
+        }
+        rules.compile();
+        return rules;
+    }
+
+    private static int station(Map<String, Integer> stations, String name, String where) {
+        Integer code = stations.get(name);
+        if (code == null) {
+            throw new IllegalArgumentException(where + "unknown station " + name + ", name it with a station line first");
+        }
+        return code;
+    }
+
+    private static int score(String word, String where) {
+        int score = parseInt(word.startsWith("+") ? word.substring(1) : word, where);
+        checkRange(score, where);
+        return score;
+    }
+
+    private static void checkRange(int score, String where) {
+        if (score < -MAX_SCORE || score > MAX_SCORE) {
+            throw new IllegalArgumentException(where + "score " + score + " isn't between " + -MAX_SCORE + " and " + MAX_SCORE);
+        }
+    }
+
+    private static int parseInt(String word, String where) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(where + word + " isn't a number");
+        }
+    }
+
+    /**
+     * fills neighbourhood from pair and isolated, a station's total is at most 5 * MAX_SCORE so it fits in a byte
+     */
+    private void compile() {
+        for (int i = 0; i < neighbourhood.length; i++) {
+            int left = i >>> 12;
+            int station = i >>> 9 & 7;
+            int right = i >>> 6 & 7;
+            int below = i >>> 3 & 7;
+            int above = i & 7;
+            int base = station << 5;
+            int score = pair[base | LEFT << 3 | left] + pair[base | RIGHT << 3 | right]
+                    + pair[base | BELOW << 3 | below] + pair[base | ABOVE << 3 | above];
+            if (left == Fitness.EMPTY && right == Fitness.EMPTY && below == Fitness.EMPTY && above == Fitness.EMPTY) {
+                score += isolated[station];
+            }
+            neighbourhood[i] = (byte) score;
+        }
+    }
+
+    /**
+     * @param random - where the draw comes from
+     * @return one of the shapes the rules name, each as likely
+     */
+    int randomShape(SplittableRandom random) {
+        return shapes[random.nextInt(0, shapes.length)];
+    }
+
+    /**
+     * @param random - where the draw comes from
+     * @return one of the codes the rules name, empty included, each as likely
+     */
+    int randomStation(SplittableRandom random) {
+        return stations[random.nextInt(0, stations.length)];
+    }
+
+    /**
+     * score of one station given its neighbours, off the edge of the layout has to be passed in as empty
+     */
+    int score(int station, int left, int right, int below, int above) {
+        return neighbourhood[left << 12 | station << 9 | right << 6 | below << 3 | above];
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,1022 @@
+package ga;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Headless driver for the genetic algorithm. Owns the factories and the coordinator loop that used to live in
+ * Controller, so it can run on machines without a JavaFX stage. Controller subscribes to finished generations
+ * through setListener, the command line runner just prints a summary at the end.
+ *
+ * usage: java ga.GaEngine [--n shapes] [--m spaces | --width columns --height rows] [--k population] [--iterations max] [--seed seed]
+ *                      [--mode threads|virtual|pool] [--parallelism workers] [--kernel scalar|vector] [--rules file] [--metrics] [--verbose]
+ *                      [--mutation-rate rate] [--selection roulette|tournament|rank] [--operators swap|random]
+ *                      [--checkpoint file] [--checkpoint-every generations] [--resume file] [--log file]
+ *                      [--cache entries]
+ *                      [--island id --islands count [--topology ring|full] [--migrate-every generations] [--migrants count]
+ *                       [--port base | --socket-dir directory]]
+ *                      [--target fitness] [--stall generations] [--seconds budget] [--max-evaluations budget]
+ * with --resume the population size and layout size come from the checkpoint and --n/--m/--width/--height/--k/--seed are ignored
+ */
+public class GaEngine {
+
+    /**
+     * THREADS - every factory is its own thread, k can't be more than the number of processors
+     * VIRTUAL - every factory is its own virtual thread(Java 21+), so k can go far past the number of platform threads
+     * POOL - factories are plain data stepped by a ForkJoinPool, any k runs on every core
+     */
+    public enum Mode { THREADS, VIRTUAL, POOL }
+
+    /**
+     * generations between splitting every random stream again, see seedStreams. fixed so the same seed gives the
+     * same run however often it's checkpointed
+     */
+    static final int DEFAULT_EPOCH = 10;
+
+    private final int n;//The number of shapes
+    private final int m;//max number of spaces for shapes to be placed, width * height
+    private final int width;//columns in a layout
+    private final int height;//rows in a layout
+    private final int k;//The number of members of the population
+    private final int maxIterations;//how many factory signals the coordinator handles before closing out
+    private final long seed;
+
+    private SplittableRandom random;//coordinator randomness, only ever touched by the coordinator thread. split again every epoch
+    private long epochSeed;//seed the current epoch's streams were split from
+    private int epoch = DEFAULT_EPOCH;//generations in an epoch, a resumed run keeps the one its checkpoint was written with
+
+    private CountDownLatch startingLine;
+    private GenerationScheduler scheduler;
+    private ShapeFactory[] factories;
+    private Population population;//every factory's layout, score and generation, see Population
+    private Thread[] threads;//thread per factory modes only
+    private IdRing unprocessed;//ids of factories that finished a generation
+
+    private Mode mode = Mode.THREADS;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    //pooled mode only
+    private ForkJoinPool pool;
+    private int[] pairing;//permutation of factory ids used to pick crossover pairs
+    private int threshold;//factories per ForkJoin chunk
+
+    private Consumer<Generation> listener = gen -> { };
+    private boolean verbose = false;
+    private final Metrics metrics = new Metrics();
+
+    private Path checkpointPath;//null for no checkpoints
+    private int checkpointEvery = 1000;//always a multiple of epoch, so checkpoints fall on the end of one
+    private Checkpoint.Writer checkpoints;
+    private Checkpoint resumed;//where the factories start from, null for a fresh population
+    private Path resumedPath;
+    private int startGeneration;//generation number of the resumed population, 0 for a fresh one
+
+    private FitnessCache cache;//shared score cache, null for none
+    private double mutationRate = ShapeFactory.DEFAULT_MUTATION_RATE;
+    private ShapeFactory.Selection selection = ShapeFactory.Selection.ROULETTE;
+    private ShapeFactory.Operators operators = ShapeFactory.Operators.SWAP;
+
+    private Island island;//null unless this is one island of a multi process run
+    private int migrateEvery;
+    private int migrants;
+
+    private Path logPath;//null for no generation log
+    private GenerationLog.Writer log;
+
+    private final List<StopCondition> stopConditions = new ArrayList<>();
+    private StopCondition stoppedBy;//the condition that ended the run, null if it ran out of iterations
+
+    private Generation lastCompleted;
+    private int completedGenerations;
+    private long runStart;
+    private long elapsedNanos;
+
+    /**
+     * square layouts
+     * @param n             - number of shapes
+     * @param m             - number of spaces, has to be a perfect square
+     * @param k             - number of factories in the population
+     * @param maxIterations - number of coordinator iterations to run
+     * @param seed          - master seed the coordinator's and every factory's random are split from
+     */
+    public GaEngine(int n, int m, int k, int maxIterations, long seed) {
+        this(n, squareSide(m), squareSide(m), k, maxIterations, seed);
+    }
+
+    /**
+     * @param n             - number of shapes
+     * @param width         - columns in a layout
+     * @param height        - rows in a layout
+     * @param k             - number of factories in the population
+     * @param maxIterations - number of coordinator iterations to run
+     * @param seed          - master seed the coordinator's and every factory's random are split from
+     */
+    public GaEngine(int n, int width, int height, int k, int maxIterations, long seed) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("layout has to be at least 1x1, got " + width + "x" + height);
+        }
+        if (n < 0 || n > width * height) {
+            throw new IllegalArgumentException(n + " shapes don't fit in a " + width + "x" + height + " layout");
+        }
+        this.n = n;
+        this.width = width;
+        this.height = height;
+        this.m = width * height;
+        this.k = k;
+        this.maxIterations = maxIterations;
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * an engine that carries on from the newest checkpoint in a file, with the same population size and layouts
+     * @param path          - checkpoint file
+     * @param maxIterations - number of coordinator iterations to run from there, negative for the usual k * 100000
+     * @return the engine, run() picks up at the generation after the checkpoint
+     * @throws IOException - if the file holds no intact checkpoint
+     */
+    public static GaEngine resume(Path path, int maxIterations) throws IOException {
+        Checkpoint cp = Checkpoint.load(path);
+        int iterations = maxIterations < 0 ? cp.getK() * 100000 : maxIterations;
+        GaEngine engine = new GaEngine(cp.n, cp.width, cp.height, cp.getK(), iterations, cp.seed);
+        engine.resumed = cp;
+        engine.resumedPath = path;
+        engine.startGeneration = cp.generation;
+        engine.checkpointPath = path;//keep checkpointing to the same file unless told otherwise
+        if (cp.epoch > 0) {//same epochs as the run that wrote it, so it carries on the same way
+            engine.epoch = cp.epoch;
+            if (engine.checkpointEvery % cp.epoch != 0) {
+                engine.checkpointEvery = cp.epoch;
+            }
+        }
+        return engine;
+    }
+
+    private static int squareSide(int m) {
+        int side = (int) Math.round(Math.sqrt(m));
+        if (side * side != m) {
+            throw new IllegalArgumentException("m = " + m + " isn't a perfect square, give the width and height instead");
+        }
+        return side;
+    }
+
+    /**
+     * @param listener - called from the engine thread with every finished generation
+     */
+    public void setListener(Consumer<Generation> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param verbose - if true print every finished generation to stdout
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * @param mode - how the factories are run, see Mode
+     * @throws UnsupportedOperationException - for Mode.VIRTUAL on a JVM without virtual threads, see virtualThreadsAvailable
+     */
+    public void setMode(Mode mode) {
+        if (mode == Mode.VIRTUAL && !virtualThreadsAvailable()) {
+            throw new UnsupportedOperationException("virtual thread mode needs Java 21 or newer, this is Java " + Runtime.version().feature());
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * save the population to a file every so often, see Checkpoint. writing happens on its own thread
+     *
+     * checkpoints are taken at the end of an epoch so a resume carries on exactly like the run that wrote them,
+     * which is why every has to be a multiple of the epoch. how often they're taken doesn't change the run
+     * @param path  - checkpoint file, null to turn checkpoints off
+     * @param every - generations between checkpoints, 0 keeps the current number(1000, or the resumed checkpoint's)
+     * @throws IllegalArgumentException - if every isn't a multiple of the epoch
+     */
+    public void setCheckpoint(Path path, int every) {
+        if (every > 0 && every % epoch != 0) {
+            throw new IllegalArgumentException("checkpoints every " + every + " generations wouldn't fall on the end of an epoch, make it a multiple of " + epoch);
+        }
+        this.checkpointPath = path;
+        if (every > 0) {
+            this.checkpointEvery = every;
+        }
+    }
+
+    /**
+     * share a cache of scores between the factories so a child the population has already seen isn't scored again
+     * @param entries - how many scores to keep, 0 for no cache
+     */
+    public void setFitnessCache(int entries) {
+        this.cache = entries > 0 ? new FitnessCache(entries) : null;
+    }
+
+    /**
+     * @param rate - chance each cell of a child is mutated, defaults to 1/49
+     */
+    public void setMutationRate(double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("mutation rate has to be between 0 and 1, got " + rate);
+        }
+        this.mutationRate = rate;
+    }
+
+    /**
+     * @param selection - how each factory picks its surviving child, defaults to ROULETTE
+     */
+    public void setSelection(ShapeFactory.Selection selection) {
+        this.selection = selection;
+    }
+
+    /**
+     * @param operators - how mutation and crossover change layouts, defaults to SWAP which keeps n shapes
+     */
+    public void setOperators(ShapeFactory.Operators operators) {
+        this.operators = operators;
+    }
+
+    /**
+     * make this engine one island of a multi process run, see Island
+     * @param island       - link to the other islands, the engine closes it when the run ends
+     * @param migrateEvery - generations between sending the best layouts to the peers
+     * @param migrants     - how many of the best layouts to send each time
+     */
+    public void setIsland(Island island, int migrateEvery, int migrants) {
+        this.island = island;
+        this.migrateEvery = migrateEvery;
+        this.migrants = migrants;
+    }
+
+    /**
+     * append a summary of every finished generation to a binary log, see GenerationLog and LogReplay
+     * @param path - log file, null to turn the log off
+     */
+    public void setLog(Path path) {
+        this.logPath = path;
+    }
+
+    /**
+     * end the run early once a condition fires, checked after every finished generation. the iteration budget
+     * still applies, the run ends on whichever comes first
+     * @param condition - see StopCondition for the usual ones
+     */
+    public void addStopCondition(StopCondition condition) {
+        stopConditions.add(condition);
+    }
+
+    /**
+     * @param parallelism - worker threads for Mode.POOL, defaults to the number of processors
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * runs the algorithm on the calling thread until maxIterations signals have been handled or a stop condition fires
+     * @return the last finished generation, null if none finished
+     */
+    public Generation run() {
+        if (mode == Mode.THREADS) {
+            //make sure there are enough processes to run the program smoothly
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (threads < k) {
+                System.out.println(threads + " processes available");
+                System.out.println("Ending program");
+                return null;
+            }
+        }
+
+        if (checkpointPath != null) {
+            try {
+                Checkpoint continuing = resumed != null && checkpointPath.equals(resumedPath) ? resumed : null;
+                checkpoints = new Checkpoint.Writer(checkpointPath, n, width, height, k, continuing);
+            } catch (IOException e) {
+                //asked for crash safety, so don't quietly run a long job without it
+                System.out.println("CHECKPOINT ERROR: can't write " + checkpointPath + ". " + e);
+                System.out.println("Ending program");
+                return null;
+            }
+        }
+
+        if (logPath != null) {
+            try {
+                log = new GenerationLog.Writer(logPath, width, height, 4096, resumed != null);
+            } catch (IOException e) {
+                System.out.println("LOG ERROR: can't write " + logPath + ", running without a generation log. " + e);
+            }
+        }
+
+        runStart = System.nanoTime();
+        stoppedBy = null;
+        metrics.start();
+        Generation currentGeneration;
+        try {
+            currentGeneration = mode == Mode.POOL ? runPooled() : runThreads();
+        } finally {
+            metrics.stop();
+            if (checkpoints != null) {
+                if (lastCompleted != null && lastCompleted.hasPopulation() && lastCompleted.getGenNum() != checkpoints.getLastOffered()) {
+                    checkpoint(lastCompleted);//so a resume carries on from where this run stopped
+                }
+                checkpoints.close();
+            }
+            if (island != null) {
+                island.close();
+            }
+            if (log != null) {
+                log.close();
+                if (log.getDropped() > 0) {
+                    System.out.println("LOG ERROR: " + log.getDropped() + " generations didn't make it into " + logPath);
+                }
+            }
+        }
+        elapsedNanos = System.nanoTime() - runStart;
+        return lastCompleted;
+    }
+
+    /**
+     * thread per factory: every factory is its own(platform or virtual) thread and reports to this one through unprocessed
+     * @return the generation being built when the budget ran out
+     */
+    private Generation runThreads() {
+        Generation currentGeneration = null;
+
+        DecimalFormat df2 = new DecimalFormat(".#####");
+
+        initializeFactories();
+
+        int[] ready = new int[k];//every factory that reported since the last drain
+        int i = 0;
+        reports:
+        while (i < maxIterations) {
+            int count = 0;
+            try {
+                count = unprocessed.drain(ready, 5, TimeUnit.SECONDS);//wait for factories to be ready to communicate
+            } catch (InterruptedException e12) {
+                e12.printStackTrace();
+            }
+
+            if (count == 0) {
+                //nothing reported, dump info for debugging and try again
+                System.out.println(unprocessed.size());
+                for (int x = 0; x < k; x++) {
+                    System.out.println(factories[x].getName() + " is " + threads[x].getState());
+                    System.out.println(df2.format(factories[x].getFitness()));
+                    System.out.println("Generation #" + factories[x].getGenNum());
+                }
+                i++;
+                continue;
+            }
+
+            for (int r = 0; r < count && i < maxIterations; r++, i++) {
+                currentGeneration = process(ready[r], currentGeneration);
+
+                //if the current generation is done, hand it off
+                if (currentGeneration != null && currentGeneration.isMax()) {
+                    //every factory is parked, so this is a consistent copy. the reports left can't finish another generation past the last one
+                    boolean last = maxIterations - i <= k;
+                    currentGeneration.capture(population, keepsPopulation(currentGeneration.getGenNum(), last));
+                    finishGeneration(currentGeneration);
+                    if (stoppedBy != null) {//every factory is parked, leave them there for closeOut
+                        break reports;
+                    }
+
+                    //every factory is accounted for, pair them up and let them all run their next generation
+                    crossoverPairs(pairing);
+                    currentGeneration = new Generation(currentGeneration.getGenNum() + 1, k);
+                    scheduler.release();
+                }
+            }
+        }
+        //end running threads
+        closeOut();
+        return currentGeneration;
+    }
+
+    /**
+     * pooled: factories are plain data and each generation is stepped in chunks on a ForkJoinPool, so k isn't
+     * limited by the number of processors. the iteration budget still counts one iteration per factory per generation
+     * @return the last generation
+     */
+    private Generation runPooled() {
+        startPooled();
+        int generations = maxIterations / k;
+
+        Generation gen = null;
+        try {
+            for (int g = startGeneration + 1; g <= startGeneration + generations && stoppedBy == null; g++) {
+                gen = stepPooled(g);
+            }
+        } finally {
+            stopPooled();
+        }
+        return gen;
+    }
+
+    /**
+     * sets up the factories and the pool for the pooled mode, package private so benchmarks can step generations themselves
+     */
+    void startPooled() {
+        factories = new ShapeFactory[k];
+        population = new Population(k, width, height);
+        for (int i = 0; i < k; i++) {
+            factories[i] = new ShapeFactory(i, n, population, i);
+        }
+        prepareFactories();
+        threshold = Math.max(1, k / (parallelism * 8));//several chunks per worker so idle workers can steal
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * runs one pooled generation
+     * @param genNum - number of the generation, 1 for the first
+     * @return the finished generation
+     */
+    Generation stepPooled(int genNum) {
+        if (genNum > 1) {
+            crossoverPairs(pairing);
+        }
+        pool.invoke(new StepTask(factories, 0, k, threshold));
+
+        Generation gen = new Generation(genNum, k);
+        gen.capture(population, keepsPopulation(genNum, genNum == startGeneration + maxIterations / k));
+        finishGeneration(gen);
+        return gen;
+    }
+
+    void stopPooled() {
+        pool.shutdown();
+    }
+
+    /**
+     * pairs the factories up at random and gives each pair a 20% chance to cross over. pooled factories cross over
+     * right away, ones running as threads are handed an Exchanger and do it at the start of their next step.
+     * only call while no factory is in the middle of a step.
+     *
+     * the shuffle only uses the coordinator's random, so the pairs don't depend on the order the factories reported in
+     * @param pairing - permutation of factory indices, reshuffled in place
+     */
+    private void crossoverPairs(int[] pairing) {
+        for (int i = k - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = pairing[i];
+            pairing[i] = pairing[j];
+            pairing[j] = temp;
+        }
+        for (int i = 0; i + 1 < k; i += 2) {
+            if (random.nextInt(0, 5) == 1) {//20% chance that crossover occurs
+                int x = random.nextInt(0, width);
+                int y = random.nextInt(0, height);
+                if (mode == Mode.POOL) {
+                    ShapeFactory.crossover(factories[pairing[i]], factories[pairing[i + 1]], x, y);
+                } else {
+                    Exchanger<PackedLayout> crossover = new Exchanger<>();
+                    factories[pairing[i]].readyCrossover(crossover, x, y);
+                    factories[pairing[i + 1]].readyCrossover(crossover, x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * steps a range of factories, splitting it in half until it is small enough to run directly
+     */
+    private static class StepTask extends RecursiveAction {
+        private final ShapeFactory[] factories;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        StepTask(ShapeFactory[] factories, int from, int to, int threshold) {
+            this.factories = factories;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                try {
+                    for (int i = from; i < to; i++) {
+                        factories[i].step();
+                    }
+                } catch (InterruptedException e) {//only the Exchanger crossover blocks, which pooled factories never use
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new StepTask(factories, from, mid, threshold), new StepTask(factories, mid, to, threshold));
+            }
+        }
+    }
+
+    /**
+     * @param genNum - generation about to be captured
+     * @param last   - true if the iteration budget runs out after it, so it's the one checkpointed when the run ends
+     * @return true if something will read every member of it, otherwise only its best layout is copied
+     */
+    private boolean keepsPopulation(int genNum, boolean last) {
+        return checkpoints != null && (last || genNum % checkpointEvery == 0) || island != null && genNum % migrateEvery == 0;
+    }
+
+    /**
+     * hands a finished generation off to the listener
+     */
+    private void finishGeneration(Generation gen) {
+        if (verbose) {
+            System.out.println("Generation #" + gen.getGenNum());
+            System.out.println("Best fit: " + gen.getBest().getFitness());
+        }
+        long evaluations = 0;
+        for (int i = 0; i < k; i++) {//every factory is between generations, so their counters are settled
+            evaluations += factories[i].getEvaluations();
+        }
+        metrics.recordGeneration(gen, evaluations);
+        completedGenerations = gen.getGenNum();
+        lastCompleted = gen;
+        long elapsed = System.nanoTime() - runStart;
+        for (StopCondition condition : stopConditions) {
+            if (condition.shouldStop(gen, evaluations, elapsed)) {
+                stoppedBy = condition;
+                if (verbose) {
+                    System.out.println("Stopping: " + condition);
+                }
+                break;
+            }
+        }
+        if (stoppedBy != null && checkpoints != null) {
+            gen.keepPopulation(population);//it's checkpointed when the run ends, before any immigrants come in
+        }
+        if (log != null) {
+            log.append(gen);
+        }
+        if (island != null) {
+            migrate(gen);
+        }
+        if (gen.getGenNum() % epoch == 0) {
+            seedStreams(random.nextLong());
+            if (checkpoints != null && gen.getGenNum() % checkpointEvery == 0) {
+                checkpoint(gen);
+            }
+        }
+        listener.accept(gen);
+    }
+
+    /**
+     * hands a generation to the checkpoint writer. the state of a random stream can't be saved, so the seed of the
+     * current epoch and the epoch length are saved instead and a resumed run splits its streams from that seed.
+     * checkpoints are taken at the end of an epoch, so resuming from one carries on exactly like the run that wrote
+     * it. the one taken when a run stops early is in the middle of an epoch, resuming from it is still repeatable
+     * but goes its own way
+     * @param gen - a finished generation that kept its population, so the writer can read it while the run goes on
+     */
+    private void checkpoint(Generation gen) {
+        checkpoints.offer(gen, epochSeed, epoch);
+    }
+
+    /**
+     * splits the coordinator's random and one for every factory, in id order, off a master seeded with seed. every
+     * stream is only ever used by its owner, so none of them are contended and the same seed gives the same run
+     * in any one mode. the crossover pairing is shuffled by the coordinator's random, so it starts over too.
+     *
+     * a run starts with the engine's seed and at the end of every epoch(DEFAULT_EPOCH generations, or whatever the
+     * resumed checkpoint was written with) splits them all again from a seed drawn from the coordinator's random
+     * @param seed - master seed
+     */
+    private void seedStreams(long seed) {
+        epochSeed = seed;
+        SplittableRandom master = new SplittableRandom(seed);
+        random = master.split();
+        for (int i = 0; i < k; i++) {
+            factories[i].setRandom(master.split());
+        }
+        pairing = new int[k];
+        for (int i = 0; i < k; i++) {
+            pairing[i] = i;
+        }
+    }
+
+    /**
+     * takes in whatever the other islands have sent, each one replaces the current worst factory, and every
+     * migrateEvery generations sends copies of this generation's best layouts out. every factory is between
+     * generations here(parked in the scheduler or not being stepped by the pool), so they can be changed directly
+     * @param gen - the generation that just finished
+     */
+    private void migrate(Generation gen) {
+        PackedLayout immigrant;
+        while ((immigrant = island.poll()) != null) {
+            int worst = 0;
+            for (int i = 1; i < k; i++) {
+                if (factories[i].getFitness() < factories[worst].getFitness()) {
+                    worst = i;
+                }
+            }
+            factories[worst].replaceLayout(immigrant);
+        }
+
+        if (gen.getGenNum() % migrateEvery == 0) {
+            int count = Math.min(migrants, k);
+            int[] best = new int[count];//ids, best first
+            int found = 0;
+            for (int id = 0; id < k; id++) {
+                int j = found;
+                while (j > 0 && gen.getFitness(best[j - 1]) < gen.getFitness(id)) {
+                    j--;
+                }
+                if (j < count) {
+                    System.arraycopy(best, j, best, j + 1, Math.min(found, count - 1) - j);
+                    best[j] = id;
+                    found = Math.min(found + 1, count);
+                }
+            }
+            PackedLayout[] layouts = new PackedLayout[count];
+            for (int i = 0; i < count; i++) {
+                layouts[i] = gen.getLayout(best[i]);//the generation's own copy, nothing changes it after capture
+            }
+            island.emigrate(gen.getGenNum(), layouts);
+        }
+    }
+
+    /**
+     * hands every factory the shared cache and its random and, when resuming, sets it to its saved layout
+     */
+    private void prepareFactories() {
+        seedStreams(seed);
+        for (int i = 0; i < k; i++) {
+            factories[i].setCache(cache);
+            factories[i].setMutationRate(mutationRate);
+            factories[i].setSelection(selection);
+            factories[i].setOperators(operators);
+        }
+        if (resumed != null) {
+            for (int i = 0; i < k; i++) {
+                factories[i].restore(resumed.layouts[i], resumed.generation);
+            }
+        }
+    }
+
+    /**
+     * starts that factories and lets them go with a count down latch
+     */
+    private void initializeFactories() {
+
+        factories = new ShapeFactory[k];
+        population = new Population(k, width, height);
+        threads = new Thread[k];
+        startingLine = new CountDownLatch(1);
+        unprocessed = new IdRing(k);
+        scheduler = new GenerationScheduler(k, metrics);
+        metrics.setBacklog(unprocessed::size);
+
+        for (int i = 0; i < k; i++) {//init factories
+            factories[i] = new ShapeFactory(i, n, population, startingLine, unprocessed, scheduler, metrics);
+        }
+        prepareFactories();
+        for (int i = 0; i < k; i++) {
+            threads[i] = mode == Mode.VIRTUAL ? newVirtualThread(factories[i], factories[i].getName())
+                    : new Thread(factories[i], factories[i].getName());
+            threads[i].start();
+        }
+        if (startGeneration > 0) {//a resumed population crosses over before its first step, like the pooled mode
+            crossoverPairs(pairing);
+        }
+        startingLine.countDown();
+
+    }
+
+    //Thread.ofVirtual() only exists on Java 21+, so it is looked up reflectively and the engine still builds on 17.
+    //all null on older JVMs
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_UNSTARTED;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderUnstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            builderName = builder.getMethod("name", String.class);
+            builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;//older JVM, virtualThreadsAvailable says so
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_UNSTARTED = builderUnstarted;
+    }
+
+    /**
+     * @return true if this JVM has virtual threads, so Mode.VIRTUAL can be used
+     */
+    public static boolean virtualThreadsAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * only called once setMode has checked virtualThreadsAvailable
+     * @param factory - what the thread runs
+     * @param name - thread name
+     * @return an unstarted virtual thread
+     */
+    private static Thread newVirtualThread(Runnable factory, String name) {
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+            return (Thread) BUILDER_UNSTARTED.invoke(builder, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("couldn't start a virtual thread", e);
+        }
+    }
+
+    /**
+     * processes a factory that reported in
+     *
+     * Flow: if first gen, start the generation
+     * -> check it isn't already in the current generation(can't happen while the scheduler holds every factory until the generation is full)
+     * -> insert it
+     *
+     * @param id                - id of the factory to process
+     * @param currentGeneration - current generation to insert the factory into
+     * @return a modified current generation
+     */
+    private Generation process(int id, Generation currentGeneration) {
+        if (id < 0 || id >= k) {
+            System.out.println("PROCESSING ERROR: factory " + id + " not found");
+            return currentGeneration;
+        }
+        if (currentGeneration == null) {//if first gen
+            currentGeneration = new Generation(startGeneration + 1, k);
+        } else if (currentGeneration.contains(id)) {//Wrong gen!
+            System.out.println("PROCESSING ERROR: factory " + id + " reported twice in generation " + currentGeneration.getGenNum());
+            return currentGeneration;
+        }
+        currentGeneration.insert(id);//pairs for crossover are picked once the whole generation is in
+        return currentGeneration;
+    }
+
+    private void closeOut() {
+        //close out threads. a factory that was released finishes its step(its crossover partner was released with
+        //it, so the exchange completes), reports and then finds the scheduler shut down, parked ones wake up to it.
+        //unprocessed holds k, so after the clear there is room for every factory's last report
+        unprocessed.clear();
+        scheduler.shutdown();
+        for (int i = 0; i < k; i++) {
+            try {
+                threads[i].join(5000);
+                if (threads[i].isAlive()) {//shouldn't happen, but don't leave the run hanging on it
+                    System.out.println("PROCESSING ERROR: " + factories[i].getName() + " didn't stop, interrupting it");
+                    threads[i].interrupt();
+                    threads[i].join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public int getCompletedGenerations() {
+        return completedGenerations;
+    }
+
+    /**
+     * @return the condition that ended the last run, null if it used its whole iteration budget
+     */
+    public StopCondition getStoppedBy() {
+        return stoppedBy;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return counters for this engine's run, safe to poll from any thread while it runs
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * prints a short summary of a finished run
+     */
+    public void printSummary() {
+        Generation last = lastCompleted;
+        double seconds = elapsedNanos / 1e9;
+        System.out.println("n=" + n + " m=" + m + " (" + width + "x" + height + ") k=" + k + " iterations=" + maxIterations + " seed=" + seed + " mode=" + mode);
+        System.out.println("Generations completed: " + completedGenerations
+                + (stoppedBy != null ? " (stopped: " + stoppedBy + ")" : ""));
+        System.out.println("Elapsed: " + String.format("%.3f", seconds) + "s ("
+                + String.format("%.1f", (completedGenerations - startGeneration) / seconds) + " generations/s)");
+        Metrics.Snapshot counters = metrics.poll();
+        System.out.println("Evaluations: " + counters.evaluations + " (" + String.format("%.0f", counters.evaluations / seconds) + "/s)");
+        if (island != null) {
+            System.out.println("Island " + island.getId() + ": sent " + island.getSent() + " layouts, took in "
+                    + island.getReceived() + (island.getDropped() > 0 ? ", dropped " + island.getDropped() : ""));
+        }
+        if (cache != null) {
+            System.out.println("Fitness cache: " + cache.capacity() + " entries, " + cache.getHits() + " hits, "
+                    + cache.getMisses() + " misses (" + String.format("%.1f", 100 * cache.getHitRate()) + "% hit rate), "
+                    + cache.getEvictions() + " evictions");
+        }
+        if (counters.schedulerWaits > 0) {//thread per factory modes only
+            System.out.println("Scheduler wait: " + String.format("%.3f", counters.schedulerWaitNanos / 1e9) + "s total, p50 "
+                    + counters.schedulerWaitP50 / 1000 + "us, p99 " + counters.schedulerWaitP99 / 1000 + "us");
+            System.out.println("Exchanger wait: " + String.format("%.3f", counters.exchangerWaitNanos / 1e9) + "s total, p50 "
+                    + counters.exchangerWaitP50 / 1000 + "us, p99 " + counters.exchangerWaitP99 / 1000 + "us");
+        }
+        if (last != null && last.getBest() != null) {
+            ShapeFactory best = last.getBest();
+            System.out.println("Best fitness: " + best.getFitness());
+            if (width <= 80) {//anything wider won't fit on a terminal
+                System.out.println(best.getLayout());
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = 32;
+        int m = 49;
+        int width = -1;
+        int height = -1;
+        int k = 4;
+        int iterations = -1;
+        long seed = System.nanoTime();
+        boolean verbose = false;
+        boolean printMetrics = false;
+        String checkpoint = null;
+        int checkpointEvery = 0;//keeps the engine's
+        String resume = null;
+        String log = null;
+        int cacheEntries = 0;
+        int islandId = -1;
+        int islands = 1;
+        Island.Topology topology = Island.Topology.RING;
+        int migrateEvery = 50;
+        int migrants = 2;
+        int basePort = 47500;
+        String socketDir = null;
+        String rules = null;
+        Mode mode = Mode.THREADS;
+        int parallelism = -1;
+        double mutationRate = ShapeFactory.DEFAULT_MUTATION_RATE;
+        ShapeFactory.Selection selection = ShapeFactory.Selection.ROULETTE;
+        ShapeFactory.Operators operators = ShapeFactory.Operators.SWAP;
+        double target = -1;
+        int stall = -1;
+        long seconds = -1;
+        long maxEvaluations = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--n": n = Integer.parseInt(args[++i]); break;
+                case "--m": m = Integer.parseInt(args[++i]); break;
+                case "--width": width = Integer.parseInt(args[++i]); break;
+                case "--height": height = Integer.parseInt(args[++i]); break;
+                case "--k": k = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--mode": mode = Mode.valueOf(args[++i].toUpperCase()); break;
+                case "--parallelism": parallelism = Integer.parseInt(args[++i]); break;
+                case "--mutation-rate": mutationRate = Double.parseDouble(args[++i]); break;
+                case "--selection": selection = ShapeFactory.Selection.valueOf(args[++i].toUpperCase()); break;
+                case "--operators": operators = ShapeFactory.Operators.valueOf(args[++i].toUpperCase()); break;
+                case "--kernel": Fitness.useKernel(args[++i]); break;
+                case "--rules": rules = args[++i]; break;
+                case "--metrics": printMetrics = true; break;
+                case "--checkpoint": checkpoint = args[++i]; break;
+                case "--checkpoint-every": checkpointEvery = Integer.parseInt(args[++i]); break;
+                case "--resume": resume = args[++i]; break;
+                case "--log": log = args[++i]; break;
+                case "--cache": cacheEntries = Integer.parseInt(args[++i]); break;
+                case "--island": islandId = Integer.parseInt(args[++i]); break;
+                case "--islands": islands = Integer.parseInt(args[++i]); break;
+                case "--topology": topology = Island.Topology.valueOf(args[++i].toUpperCase()); break;
+                case "--migrate-every": migrateEvery = Integer.parseInt(args[++i]); break;
+                case "--migrants": migrants = Integer.parseInt(args[++i]); break;
+                case "--port": basePort = Integer.parseInt(args[++i]); break;
+                case "--socket-dir": socketDir = args[++i]; break;
+                case "--target": target = Double.parseDouble(args[++i]); break;
+                case "--stall": stall = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Long.parseLong(args[++i]); break;
+                case "--max-evaluations": maxEvaluations = Long.parseLong(args[++i]); break;
+                case "--verbose": verbose = true; break;
+                default:
+                    System.out.println("Unknown argument: " + args[i]);
+                    System.out.println("usage: GaEngine [--n shapes] [--m spaces | --width columns --height rows] [--k population] [--iterations max] [--seed seed]"
+                            + " [--mode threads|virtual|pool] [--parallelism workers] [--kernel scalar|vector] [--rules file] [--mutation-rate rate] [--selection roulette|tournament|rank] [--operators swap|random] [--metrics] [--verbose]"
+                            + " [--checkpoint file] [--checkpoint-every generations] [--resume file] [--log file] [--cache entries]"
+                            + " [--island id --islands count [--topology ring|full] [--migrate-every generations] [--migrants count]"
+                            + " [--port base | --socket-dir directory]] [--target fitness] [--stall generations] [--seconds budget]"
+                            + " [--max-evaluations budget]");
+                    System.exit(1);
+            }
+        }
+        if (mode == Mode.VIRTUAL && !virtualThreadsAvailable()) {
+            System.out.println("--mode virtual needs Java 21 or newer, this is Java " + Runtime.version().feature()
+                    + ". Use --mode pool for a population bigger than the number of processors");
+            System.exit(1);
+        }
+        if (rules != null) {
+            try {
+                Fitness.useRules(FitnessRules.load(Paths.get(rules)));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Can't load fitness rules from " + rules + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (iterations < 0 && resume == null) {
+            iterations = k * 100000;//same budget the gui uses
+        }
+
+        GaEngine engine;
+        if (resume != null) {
+            try {
+                long loadStart = System.nanoTime();
+                engine = resume(Paths.get(resume), iterations);
+                System.out.println("Resumed " + resume + " at generation " + engine.startGeneration + " in "
+                        + String.format("%.1f", (System.nanoTime() - loadStart) / 1e6) + "ms");
+            } catch (IOException e) {
+                System.out.println("Can't resume from " + resume + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        } else if (width > 0 || height > 0) {
+            engine = new GaEngine(n, width > 0 ? width : height, height > 0 ? height : width, k, iterations, seed);
+        } else {
+            engine = new GaEngine(n, m, k, iterations, seed);
+        }
+        engine.setVerbose(verbose);
+        engine.setMode(mode);
+        if (log != null) {
+            engine.setLog(Paths.get(log));
+        }
+        engine.setFitnessCache(cacheEntries);
+        engine.setMutationRate(mutationRate);
+        engine.setSelection(selection);
+        engine.setOperators(operators);
+        if (islandId >= 0 && islands > 1) {
+            try {
+                engine.setIsland(new Island(islandId, islands, topology, engine.width, engine.height, migrants, basePort,
+                        socketDir != null ? Paths.get(socketDir) : null), migrateEvery, migrants);
+            } catch (IOException e) {
+                System.out.println("Can't start island " + islandId + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (checkpoint != null || resume != null) {
+            try {
+                engine.setCheckpoint(Paths.get(checkpoint != null ? checkpoint : resume), checkpointEvery);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Can't use --checkpoint-every " + checkpointEvery + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (parallelism > 0) {
+            engine.setParallelism(parallelism);
+        }
+        if (target >= 0) {
+            engine.addStopCondition(StopCondition.targetFitness(target));
+        }
+        if (stall > 0) {
+            engine.addStopCondition(StopCondition.noImprovement(stall));
+        }
+        if (seconds > 0) {
+            engine.addStopCondition(StopCondition.wallClock(seconds * 1000));
+        }
+        if (maxEvaluations > 0) {
+            engine.addStopCondition(StopCondition.evaluations(maxEvaluations));
+        }
+        if (printMetrics) {//print the counters once a second while it runs
+            Thread reporter = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(1000);
+                        System.out.println(engine.getMetrics().poll());
+                    }
+                } catch (InterruptedException e) {
+                    //run finished
+                }
+            }, "metrics");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+        engine.run();
+        engine.printSummary();
+    }
+}
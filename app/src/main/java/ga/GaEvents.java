@@ -0,0 +1,94 @@
+package ga;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events for the GA pipeline, they show up under "Genetic Algorithm" in JMC.
+ * recording is off unless a flight recording is running, ie java -XX:StartFlightRecording=filename=ga.jfr ...
+ * and an uncommitted event costs next to nothing, so the engine creates them unconditionally
+ */
+final class GaEvents {
+
+    private GaEvents() {
+    }
+
+    @Name("ga.Generation")
+    @Label("Generation")
+    @Category("Genetic Algorithm")
+    @Description("A generation was finished and handed to the listener")
+    @StackTrace(false)
+    static class GenerationEvent extends Event {
+        @Label("Generation")
+        int generation;
+
+        @Label("Best Fitness")
+        double bestFitness;
+
+        @Label("Mean Fitness")
+        double meanFitness;
+
+        @Label("Evaluations")
+        @Description("Fitness evaluations done by the whole population during this generation")
+        long evaluations;
+
+        @Label("Backlog")
+        @Description("Factories that had reported and were waiting to be processed when the generation finished")
+        int backlog;
+    }
+
+    @Name("ga.SchedulerWait")
+    @Label("Scheduler Wait")
+    @Category("Genetic Algorithm")
+    @Description("A factory parked waiting for the engine to release the next generation")
+    @StackTrace(false)
+    static class SchedulerWaitEvent extends Event {
+        @Label("Factory")
+        int factory;
+    }
+
+    @Name("ga.ExchangerWait")
+    @Label("Exchanger Wait")
+    @Category("Genetic Algorithm")
+    @Description("A factory blocked in the crossover Exchanger waiting for its partner")
+    @StackTrace(false)
+    static class ExchangerWaitEvent extends Event {
+        @Label("Factory")
+        int factory;
+    }
+
+    @Name("ga.Pipeline")
+    @Label("Pipeline")
+    @Category("Genetic Algorithm")
+    @Description("Periodic sample of the engine's rates and queue depths")
+    @Period("1 s")
+    @StackTrace(false)
+    static class PipelineEvent extends Event {
+        @Label("Generations Per Second")
+        double generationsPerSecond;
+
+        @Label("Evaluations Per Second")
+        double evaluationsPerSecond;
+
+        @Label("Backlog")
+        int backlog;
+
+        @Label("Queue Depth")
+        @Description("Finished generations waiting for the display")
+        int queueDepth;
+
+        @Label("Scheduler Wait p99")
+        @Timespan(Timespan.NANOSECONDS)
+        long schedulerWaitP99;
+
+        @Label("Exchanger Wait p99")
+        @Timespan(Timespan.NANOSECONDS)
+        long exchangerWaitP99;
+    }
+}
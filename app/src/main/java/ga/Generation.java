@@ -0,0 +1,157 @@
+package ga;
+
+import java.util.BitSet;
+
+/**
+ * Used to keep track of a record of past and current generations of ShapeFactories
+ *
+ * factories are addressed by id(0 to k-1) and membership is a bitset, so inserting is constant time. the engine
+ * pairs factories for crossover once the whole generation is in, not as they report
+ *
+ * once every factory is in, the engine captures the population: best, mean and worst from one pass over the
+ * fitness column and a copy of the best layout. only the generations something reads every member of(checkpoints
+ * and migration) keep a copy of the whole population, copying it every generation cost more than stepping it
+ */
+class Generation {
+    private int genNum;
+    private int k;
+    private BitSet members;//ids of the factories in this generation
+    private int count;//number of members
+    private Population population;//copy of every member, null unless captured whole
+    private Population bestRow;//copy of just the best member, null when the whole population was kept
+    private int bestId;//best of this gen, -1 until captured
+    private ShapeFactory best;//snapshot view of the best, made when first asked for
+    private double worst;
+    private double mean;
+
+    public Generation(int gen, int max) {
+        k = max;
+        genNum = gen;
+        members = new BitSet(max);
+        bestId = -1;
+    }
+
+    /**
+     * @param id - factory that finished this generation
+     */
+    public void insert(int id) {
+        if (!members.get(id)) {
+            members.set(id);
+            count++;
+        }
+    }
+
+    /**
+     * marks every member of the population as in this generation, works out the best, mean and worst fitness and
+     * copies the best layout. only call when no factory is in the middle of a step
+     * @param live  - the engine's population
+     * @param whole - true to keep a copy of every member as well, for getFitness, getLayout and checkpoints
+     */
+    void capture(Population live, boolean whole) {
+        members.set(0, k);
+        count = k;
+        double[] fitness = live.fitness;
+        int bestIndex = 0;
+        double low = fitness[0];
+        double sum = 0;
+        for (int i = 0; i < k; i++) {//one straight pass over the fitness column
+            double f = fitness[i];
+            if (f > fitness[bestIndex]) {
+                bestIndex = i;
+            }
+            low = Math.min(low, f);
+            sum += f;
+        }
+        bestId = bestIndex;
+        best = null;
+        worst = low;
+        mean = sum / k;
+        population = null;
+        bestRow = null;
+        if (whole) {
+            population = live.copyOf();
+        } else {
+            bestRow = live.copyOf(bestIndex);
+        }
+    }
+
+    /**
+     * keeps a copy of every member after all, if capture didn't. the live population may have moved on since(ie
+     * immigrants taken in), only call when no factory is in the middle of a step
+     * @param live - the engine's population
+     */
+    void keepPopulation(Population live) {
+        if (population == null) {
+            population = live.copyOf();
+        }
+    }
+
+    /**
+     * @return true if the whole population was kept, not just the best
+     */
+    boolean hasPopulation() {
+        return population != null;
+    }
+
+    /**
+     * @param id - factory id
+     * @return true if that factory already reported in this generation
+     */
+    public boolean contains(int id) {
+        return members.get(id);
+    }
+
+    public ShapeFactory getBest() {//should only be used on finished generations
+        if (best == null && bestId >= 0) {
+            best = bestRow != null ? new ShapeFactory(bestId, bestRow, 0) : new ShapeFactory(bestId, population, bestId);
+        }
+        return best;
+    }
+
+    /**
+     * only on generations that kept their population
+     * @param id - factory id
+     * @return that factory's fitness when the generation was captured
+     */
+    public double getFitness(int id) {
+        return population.fitness[id];
+    }
+
+    /**
+     * only on generations that kept their population
+     * @param id - factory id
+     * @return a view of that factory's layout as it was when the generation was captured
+     */
+    public PackedLayout getLayout(int id) {
+        return population.layout(id);
+    }
+
+    Population getPopulation() {
+        return population;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getWorst() {
+        return worst;
+    }
+
+    public int getGenNum() {
+        return genNum;
+    }
+
+    public boolean isMax() {
+        if (count == k) {
+            return true;
+        } else if (count > k) {
+            System.out.println("ERROR: Generation " + genNum + " is over size limit");
+        }
+        return false;
+    }
+
+    public String toString() {
+        return "Generation#: " + genNum + ", Best Fitness: " + getBest().getFitness();
+    }
+}
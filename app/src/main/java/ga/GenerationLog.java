@@ -0,0 +1,268 @@
+package ga;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append only binary log with one fixed size record per finished generation, so record i is at a known offset and
+ * the history can be read back in any order. a resumed run with the same layout size appends to the same file, a
+ * fresh one starts it over.
+ *
+ * header: magic, version, width, height
+ * record: generation(int), best, mean and worst fitness(double), the best layout's words(long each)
+ */
+final class GenerationLog {
+
+    private static final int MAGIC = 0x47414C47;//GALG
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+
+    private GenerationLog() {
+    }
+
+    private static int recordSize(int width, int height) {
+        return 4 + 3 * 8 + 8 * PackedLayout.wordsFor(width * height);
+    }
+
+    /**
+     * one generation read back from a log
+     */
+    static final class Record {
+        final int generation;
+        final double best;
+        final double mean;
+        final double worst;
+        final PackedLayout layout;//best layout of the generation
+
+        Record(int generation, double best, double mean, double worst, PackedLayout layout) {
+            this.generation = generation;
+            this.best = best;
+            this.mean = mean;
+            this.worst = worst;
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * Bounded buffer between the engine and a writer thread. append only copies a record into a preallocated ring
+     * and never blocks, the writer thread drains whole runs of records to the file. there is exactly one producer(the
+     * engine thread) and one consumer, so the ring only needs the two volatile counters. if the writer falls a whole
+     * ring behind, records are dropped and counted rather than stalling the engine.
+     *
+     * with nothing to write the writer parks until append wakes it, append only unparks it when it said it was going
+     * to sleep so a busy writer costs the engine nothing
+     */
+    static final class Writer implements Runnable {
+
+        private final FileChannel channel;
+        private final ByteBuffer ring;
+        private final int capacity;//records
+        private final int recordSize;
+        private final int words;
+        private final Thread thread;
+
+        private volatile long head;//records appended, written by the engine only
+        private volatile long tail;//records written out, written by the writer thread only
+        private volatile boolean sleeping;//writer found the ring empty and is about to park or parked
+        private volatile boolean closed;
+        private volatile boolean failed;//the file couldn't be written, everything after is dropped
+        private long dropped;
+
+        /**
+         * opens the log and starts the writer thread
+         * @param path     - log file
+         * @param width    - columns in a layout
+         * @param height   - rows in a layout
+         * @param capacity - records the ring holds before appends get dropped
+         * @param resuming - append to what is already in the file, otherwise it is emptied first
+         * @throws IOException - if the file can't be opened or is a log of a different layout size
+         */
+        Writer(Path path, int width, int height, int capacity, boolean resuming) throws IOException {
+            this.capacity = capacity;
+            this.recordSize = recordSize(width, height);
+            this.words = PackedLayout.wordsFor(width * height);
+            this.ring = ByteBuffer.allocateDirect(capacity * recordSize);
+            channel = resuming ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } else {
+                checkHeader(channel, path, width, height);
+                //drop a partial record left by a crash so every record stays at its offset
+                channel.truncate(HEADER + (channel.size() - HEADER) / recordSize * recordSize);
+            }
+            channel.position(channel.size());
+
+            thread = new Thread(this, "generation-log");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * adds a finished generation to the log, never blocks
+         * @param gen - a finished generation
+         */
+        void append(Generation gen) {
+            long h = head;
+            if (failed || h - tail == capacity) {//writer is a whole ring behind
+                dropped++;
+                return;
+            }
+            int pos = (int) (h % capacity) * recordSize;
+            ring.putInt(pos, gen.getGenNum());
+            ring.putDouble(pos + 4, gen.getBest().getFitness());
+            ring.putDouble(pos + 12, gen.getMean());
+            ring.putDouble(pos + 20, gen.getWorst());
+            PackedLayout layout = gen.getBest().getLayout();
+            for (int w = 0; w < words; w++) {
+                ring.putLong(pos + 28 + 8 * w, layout.getWord(w));
+            }
+            head = h + 1;//publishes the record to the writer
+            if (sleeping) {//the ring was empty, wake the writer up
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * @return records that didn't fit in the ring and were never written
+         */
+        long getDropped() {
+            return dropped;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    long t = tail;
+                    long h = head;
+                    if (t == h) {
+                        if (closed && head == t) {
+                            return;
+                        }
+                        sleeping = true;
+                        if (head == t && !closed) {//look again now append can see sleeping, or its record could be missed
+                            LockSupport.parkNanos(this, 1_000_000_000L);//append or close unparks, the timeout is only a fallback
+                        }
+                        sleeping = false;
+                        continue;
+                    }
+                    int from = (int) (t % capacity);
+                    int count = (int) Math.min(h - t, capacity - from);//up to the end of the ring, the rest next time round
+                    ByteBuffer run = ring.duplicate();
+                    run.limit((from + count) * recordSize).position(from * recordSize);
+                    while (run.hasRemaining()) {
+                        channel.write(run);
+                    }
+                    tail = t + count;
+                }
+            } catch (IOException e) {
+                System.out.println("LOG ERROR: generation log stopped, " + e);
+                failed = true;
+            }
+        }
+
+        /**
+         * writes out everything appended so far and closes the file
+         */
+        void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+                channel.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, Path path, int width, int height) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(path + " is not a generation log");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(path + " is not a generation log");
+        }
+        int w = header.getInt();
+        int h = header.getInt();
+        if ((width > 0 && w != width) || (height > 0 && h != height)) {
+            throw new IOException(path + " is a log of " + w + "x" + h + " layouts, not " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Random access reads of a log, records are read straight from the file so logs of any length work
+     */
+    static final class Reader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int width;
+        private final int height;
+        private final int words;
+
+        /**
+         * @param path - log file
+         * @throws IOException - if it isn't a generation log
+         */
+        Reader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            checkHeader(channel, path, 0, 0);
+            channel.read(header, 0);
+            header.flip();
+            header.position(8);
+            width = header.getInt();
+            height = header.getInt();
+            words = PackedLayout.wordsFor(width * height);
+            buffer = ByteBuffer.allocate(recordSize(width, height));
+        }
+
+        /**
+         * @return number of complete records, grows while a run is still appending
+         * @throws IOException - if the file can't be read
+         */
+        long size() throws IOException {
+            return (channel.size() - HEADER) / buffer.capacity();
+        }
+
+        /**
+         * @param index - record number, 0 for the first
+         * @return that record
+         * @throws IOException - if it can't be read
+         */
+        Record read(long index) throws IOException {
+            buffer.clear();
+            long pos = HEADER + index * buffer.capacity();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pos + buffer.position()) < 0) {
+                    throw new EOFException("no record " + index);
+                }
+            }
+            PackedLayout layout = new PackedLayout(width, height);
+            for (int w = 0; w < words; w++) {
+                layout.setWord(w, buffer.getLong(28 + 8 * w));
+            }
+            return new Record(buffer.getInt(0), buffer.getDouble(4), buffer.getDouble(12), buffer.getDouble(20), layout);
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ga;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * Lock step barrier between the factories and the engine. Every factory arrives once it has finished a generation
+ * and parks until the engine has paired up the whole generation and releases it, so no factory can run ahead into
+ * the next generation and the engine never has to poll thread states.
+ *
+ * the engine is a party of its own but never blocks on the barrier, it only arrives once it is done with a generation.
+ * a single Phaser tops out at 65535 parties, so factories are spread over a tree of leaf phasers under one root.
+ * Phaser parks with LockSupport, so waiting factories don't pin the carrier when they run on virtual threads
+ */
+final class GenerationScheduler {
+
+    private static final int LEAF_PARTIES = 1024;//factories per leaf phaser
+
+    private final Phaser root;
+    private final Phaser[] leaves;
+    private final Metrics metrics;
+
+    /**
+     * @param factories - number of factories that will call awaitRelease every generation
+     * @param metrics   - where the time factories spend parked is recorded
+     */
+    GenerationScheduler(int factories, Metrics metrics) {
+        this.metrics = metrics;
+        root = new Phaser(1);//the engine
+        leaves = new Phaser[(factories + LEAF_PARTIES - 1) / LEAF_PARTIES];
+        for (int i = 0; i < leaves.length; i++) {
+            int parties = Math.min(LEAF_PARTIES, factories - i * LEAF_PARTIES);
+            leaves[i] = new Phaser(root, parties);//registers itself with the root
+        }
+    }
+
+    /**
+     * called by a factory after it has reported its generation, parks until the engine releases the next one
+     * @param slot - the factory's index, 0 to factories-1
+     * @return false if the scheduler was shut down and the factory should stop
+     */
+    boolean awaitRelease(int slot) {
+        GaEvents.SchedulerWaitEvent event = new GaEvents.SchedulerWaitEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean released = leaves[slot / LEAF_PARTIES].arriveAndAwaitAdvance() >= 0;
+        metrics.recordSchedulerWait(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.factory = slot;
+            event.commit();
+        }
+        return released;
+    }
+
+    /**
+     * called by the engine once every factory of the current generation has been processed
+     */
+    void release() {
+        root.arrive();
+    }
+
+    /**
+     * wakes every parked factory with awaitRelease returning false
+     */
+    void shutdown() {
+        root.forceTermination();
+    }
+}
@@ -0,0 +1,157 @@
+package ga;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi producer, single consumer ring of factory ids, what the factories report to the engine through in
+ * the thread modes. Factories put their id once they finish a generation and the engine drains every id that is
+ * ready in one pass, so a full generation costs it one wake up instead of a lock round trip per factory.
+ *
+ * every slot has a sequence number(the Vyukov bounded queue): a producer claims a ticket off tail and may write
+ * slot ticket % capacity once its sequence reads ticket, then bumps it to ticket + 1 to publish. the consumer takes
+ * slot head % capacity once its sequence reads head + 1 and hands it back with head + capacity. ids come out in the
+ * order their tickets were claimed.
+ *
+ * the engine holds at most one report per factory before it releases the next generation, so with room for every
+ * factory a producer never finds the ring full. if it does anyway it yields until the consumer catches up.
+ *
+ * an empty ring makes the consumer yield a few times before it parks, so reports that come in close together are
+ * taken in one batch, and only the producer that finds it parked pays for waking it
+ */
+final class IdRing {
+
+    private final int capacity;
+    private final int mask;
+    private final int[] ids;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();//next ticket for a producer
+    private volatile long head;//next slot for the consumer, only the consumer writes it
+
+    private volatile Thread consumer;
+    private final AtomicBoolean waiting = new AtomicBoolean();//consumer is parked or about to park, the producer that clears it unparks it
+    private static final int YIELDS = 16;//before parking
+
+    /**
+     * @param capacity - ids the ring has to hold at once, rounded up to a power of two
+     */
+    IdRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity " + capacity + " isn't between 1 and 2^30");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.ids = new int[this.capacity];
+        this.sequence = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    /**
+     * called by any producer, never blocks unless the ring is full
+     * @param id - factory id to report
+     */
+    void put(int id) {
+        long ticket = tail.getAndIncrement();
+        int slot = (int) ticket & mask;
+        while (sequence.get(slot) != ticket) {//full, the consumer hasn't handed this slot back yet
+            Thread.yield();
+        }
+        ids[slot] = id;
+        sequence.set(slot, ticket + 1);//volatile, so either the consumer sees it or this sees waiting below
+        if (waiting.get() && waiting.compareAndSet(true, false)) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * takes every id that is ready right now, only the consumer may call it
+     * @param into - where the ids go, at most into.length are taken
+     * @return how many ids were taken, 0 if none were ready
+     */
+    int drain(int[] into) {
+        long h = head;
+        int count = 0;
+        while (count < into.length) {
+            int slot = (int) h & mask;
+            if (sequence.get(slot) != h + 1) {//empty, or claimed but not published yet
+                break;
+            }
+            into[count++] = ids[slot];
+            sequence.lazySet(slot, h + capacity);
+            h++;
+        }
+        if (count > 0) {
+            head = h;//once per batch
+        }
+        return count;
+    }
+
+    /**
+     * takes every id that is ready, parking until at least one is, only the consumer may call it
+     * @param into    - where the ids go, at most into.length are taken
+     * @param timeout - how long to wait for the first id
+     * @param unit    - unit of timeout
+     * @return how many ids were taken, 0 if the timeout ran out first
+     * @throws InterruptedException - if interrupted while waiting
+     */
+    int drain(int[] into, long timeout, TimeUnit unit) throws InterruptedException {
+        int count = drain(into);
+        for (int i = 0; count == 0 && i < YIELDS; i++) {
+            Thread.yield();
+            count = drain(into);
+        }
+        if (count > 0) {
+            return count;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        consumer = Thread.currentThread();
+        try {
+            while (true) {
+                waiting.set(true);
+                count = drain(into);//check again after announcing, a producer that published before it won't unpark
+                if (count > 0) {
+                    return count;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return 0;
+                }
+                LockSupport.parkNanos(this, left);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiting.set(false);
+        }
+    }
+
+    /**
+     * throws away every id that is ready, only the consumer may call it
+     */
+    void clear() {
+        int[] discard = new int[Math.min(capacity, 1024)];
+        while (drain(discard) > 0) {
+        }
+    }
+
+    /**
+     * @return ids claimed but not taken yet, may be stale by the time it returns
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
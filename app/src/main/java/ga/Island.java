@@ -0,0 +1,316 @@
+package ga;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One engine process's link to the other islands of a multi process run. Every island evolves its own population
+ * and every so often sends copies of its best layouts to its peers, which swap them in for their worst factories.
+ *
+ * the engine never waits on the network: emigrate only drops the batch in a single slot outbox(a newer batch
+ * replaces one the sender hasn't got to yet) and poll only takes what reader threads have already decoded.
+ * peers that aren't up yet or went away are skipped and reconnected to on the next batch.
+ *
+ * wire format, one message per batch: magic, sender id, generation, width, height, count(ints) then count layouts
+ * as their packed words
+ */
+final class Island {
+
+    /**
+     * RING - every island sends to the next one
+     * FULL - every island sends to all the others
+     */
+    enum Topology { RING, FULL }
+
+    private static final int MAGIC = 0x47414D49;//GAMI
+    private static final int HEADER = 24;
+    private static final int MAX_PENDING = 256;//immigrants held for the engine before new ones get dropped
+
+    private final int id;
+    private final int islands;
+    private final Topology topology;
+    private final int width;
+    private final int height;
+    private final int words;
+    private final int migrants;//most layouts a batch may hold
+    private final SocketAddress[] addresses;//by island id
+    private final Path socketDir;//unix domain sockets only, null for tcp
+
+    private final ServerSocketChannel server;
+    private final SocketChannel[] peers;//only touched by the sender thread
+    private final Thread sender;
+    private final Thread acceptor;
+
+    private final AtomicReference<Batch> outbox = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<PackedLayout> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder sent = new LongAdder();//layouts
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private static final class Batch {
+        final int generation;
+        final PackedLayout[] layouts;
+
+        Batch(int generation, PackedLayout[] layouts) {
+            this.generation = generation;
+            this.layouts = layouts;
+        }
+    }
+
+    /**
+     * binds this island's socket and starts the sender and acceptor threads
+     * @param id        - this island, 0 to islands-1
+     * @param islands   - number of islands in the run
+     * @param topology  - who sends to whom
+     * @param width     - columns in a layout, every island has to use the same size
+     * @param height    - rows in a layout
+     * @param migrants  - layouts per batch, a bigger batch from a peer is refused. every island has to use the same
+     * @param basePort  - island i listens on localhost basePort + i, ignored for unix domain sockets
+     * @param socketDir - directory for unix domain sockets, null for tcp
+     * @throws IOException - if the socket can't be bound
+     */
+    Island(int id, int islands, Topology topology, int width, int height, int migrants, int basePort, Path socketDir) throws IOException {
+        if (id < 0 || id >= islands) {
+            throw new IllegalArgumentException("island " + id + " isn't one of 0-" + (islands - 1));
+        }
+        if (migrants < 1 || HEADER + (long) migrants * PackedLayout.wordsFor(width * height) * 8 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(migrants + " migrants don't fit in one batch");
+        }
+        this.id = id;
+        this.islands = islands;
+        this.topology = topology;
+        this.width = width;
+        this.height = height;
+        this.words = PackedLayout.wordsFor(width * height);
+        this.migrants = migrants;
+        this.socketDir = socketDir;
+        addresses = new SocketAddress[islands];
+        for (int i = 0; i < islands; i++) {
+            addresses[i] = socketDir != null ? UnixDomainSocketAddress.of(socketDir.resolve("island-" + i + ".sock"))
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), basePort + i);
+        }
+        peers = new SocketChannel[islands];
+
+        if (socketDir != null) {
+            Files.deleteIfExists(socketDir.resolve("island-" + id + ".sock"));//left over from a run that died
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(addresses[id]);
+
+        sender = new Thread(this::send, "island-" + id + "-sender");
+        sender.setDaemon(true);
+        sender.start();
+        acceptor = new Thread(this::accept, "island-" + id + "-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * queues copies of layouts to send to this island's peers, never blocks
+     * @param generation - generation they came from
+     * @param layouts    - layouts to send, have to be copies the engine won't change again
+     */
+    void emigrate(int generation, PackedLayout[] layouts) {
+        outbox.set(new Batch(generation, layouts));
+        LockSupport.unpark(sender);
+    }
+
+    /**
+     * @return a layout another island sent, or null if there is none waiting
+     */
+    PackedLayout poll() {
+        PackedLayout layout = inbox.poll();
+        if (layout != null) {
+            pending.decrementAndGet();
+        }
+        return layout;
+    }
+
+    private void send() {
+        ByteBuffer buffer = ByteBuffer.allocate(0);
+        while (!closed) {
+            Batch batch = outbox.getAndSet(null);
+            if (batch == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            int size = HEADER + batch.layouts.length * words * 8;
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate(size);
+            }
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(id).putInt(batch.generation).putInt(width).putInt(height).putInt(batch.layouts.length);
+            for (PackedLayout layout : batch.layouts) {
+                for (int w = 0; w < words; w++) {
+                    buffer.putLong(layout.getWord(w));
+                }
+            }
+            buffer.flip();
+
+            for (int step = 1; step < islands; step++) {
+                if (topology == Topology.RING && step > 1) {
+                    break;
+                }
+                int peer = (id + step) % islands;
+                try {
+                    if (peers[peer] == null) {
+                        peers[peer] = socketDir != null ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+                        peers[peer].connect(addresses[peer]);
+                    }
+                    ByteBuffer message = buffer.duplicate();
+                    while (message.hasRemaining()) {
+                        peers[peer].write(message);
+                    }
+                    sent.add(batch.layouts.length);
+                } catch (IOException e) {//peer not up yet or gone, try again with the next batch
+                    closeQuietly(peers[peer]);
+                    peers[peer] = null;
+                }
+            }
+        }
+        for (SocketChannel peer : peers) {
+            closeQuietly(peer);
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                Thread reader = new Thread(() -> receive(channel), "island-" + id + "-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("MIGRATION ERROR: island " + id + " stopped accepting peers, " + e);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * reads batches from one peer until it hangs up
+     */
+    private void receive(SocketChannel channel) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        ByteBuffer body = ByteBuffer.allocate(0);
+        try (channel) {
+            while (!closed) {
+                header.clear();
+                if (!readFully(channel, header)) {
+                    return;
+                }
+                header.flip();
+                int magic = header.getInt();
+                int from = header.getInt();
+                header.getInt();//generation, only for debugging
+                int w = header.getInt();
+                int h = header.getInt();
+                int count = header.getInt();
+                if (magic != MAGIC || w != width || h != height || count < 0 || count > migrants) {//don't size a buffer off a bad count
+                    System.out.println("MIGRATION ERROR: island " + id + " got a bad batch from island " + from
+                            + " (" + count + " " + w + "x" + h + " layouts, expected at most " + migrants + " " + width + "x" + height + ")");
+                    return;
+                }
+                long size = (long) count * words * 8;
+                if (body.capacity() < size) {
+                    body = ByteBuffer.allocate((int) size);
+                }
+                body.clear().limit((int) size);
+                if (!readFully(channel, body)) {
+                    return;
+                }
+                body.flip();
+                for (int i = 0; i < count; i++) {
+                    PackedLayout layout = new PackedLayout(width, height);
+                    for (int word = 0; word < words; word++) {
+                        layout.setWord(word, body.getLong());
+                    }
+                    if (pending.incrementAndGet() > MAX_PENDING) {//engine isn't keeping up, newest ones lose
+                        pending.decrementAndGet();
+                        dropped.increment();
+                    } else {
+                        inbox.add(layout);
+                        received.increment();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //peer went away
+        }
+    }
+
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //already closed
+            }
+        }
+    }
+
+    /**
+     * stops the threads and closes every socket
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(sender);
+        try {
+            server.close();
+            sender.join();
+            if (socketDir != null) {
+                Files.deleteIfExists(socketDir.resolve("island-" + id + ".sock"));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long getSent() {
+        return sent.sum();
+    }
+
+    long getReceived() {
+        return received.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,74 @@
+package ga;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts 1, 2, 4... up to --islands engine processes on this machine, each one an island of the same run, and
+ * prints the combined fitness evaluations per second for every count so the scaling can be checked. each island
+ * gets the same iteration budget, so with enough cores the wall time should stay flat while throughput grows.
+ *
+ * usage: java ga.IslandHarness [--islands max] [--port base] [GaEngine arguments...]
+ * everything it doesn't know is passed on to every GaEngine, ie --mode pool --k 64 --iterations 640000
+ */
+public class IslandHarness {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int maxIslands = Runtime.getRuntime().availableProcessors();
+        int basePort = 47500;
+        List<String> engineArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--islands": maxIslands = Integer.parseInt(args[++i]); break;
+                case "--port": basePort = Integer.parseInt(args[++i]); break;
+                default: engineArgs.add(args[i]);
+            }
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+
+        System.out.println("islands  wall(s)  evaluations/s  speedup  best");
+        double single = 0;
+        for (int count = 1; count <= maxIslands; count *= 2) {
+            Process[] processes = new Process[count];
+            for (int i = 0; i < count; i++) {
+                List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", classPath, "ga.GaEngine",
+                        "--island", String.valueOf(i), "--islands", String.valueOf(count), "--port", String.valueOf(basePort)));
+                command.addAll(engineArgs);
+                processes[i] = new ProcessBuilder(command).redirectErrorStream(true).start();
+            }
+
+            long start = System.nanoTime();
+            double evaluationsPerSecond = 0;
+            double best = 0;
+            for (Process p : processes) {
+                try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                    String line;
+                    while ((line = out.readLine()) != null) {
+                        if (line.startsWith("Evaluations: ")) {//Evaluations: 405092 (127550/s)
+                            evaluationsPerSecond += Double.parseDouble(line.substring(line.indexOf('(') + 1, line.indexOf("/s")));
+                        } else if (line.startsWith("Best fitness: ")) {
+                            best = Math.max(best, Double.parseDouble(line.substring("Best fitness: ".length())));
+                        } else if (line.contains("ERROR") || line.startsWith("Can't")) {
+                            System.out.println("  " + line);
+                        }
+                    }
+                }
+                p.waitFor();
+            }
+            double wall = (System.nanoTime() - start) / 1e9;
+            if (count == 1) {
+                single = evaluationsPerSecond;
+            }
+            System.out.println(String.format("%7d  %7.2f  %13.0f  %7.2f  %.5f", count, wall, evaluationsPerSecond,
+                    single > 0 ? evaluationsPerSecond / single : 0, best));
+            basePort += count;//don't trip over sockets the last round is still closing
+        }
+    }
+}
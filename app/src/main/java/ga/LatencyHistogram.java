@@ -0,0 +1,78 @@
+package ga;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with power of two buckets, bucket b holds waits between 2^(b-1) and 2^b - 1 nanoseconds.
+ * coarse, but recording is two adds so factories can record every wait without slowing each other down. waits
+ * mostly land in the same few buckets, so each bucket is a LongAdder, which spreads factories adding at once
+ * over cells of its own instead of making them all fight over one counter.
+ * percentiles are reported as the upper edge of the bucket they fall in
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets[b] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos - how long the wait took
+     */
+    void record(long nanos) {
+        if (nanos < 0) {//nanoTime isn't guaranteed monotonic across cores on every platform
+            nanos = 0;
+        }
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return number of recorded waits
+     */
+    long count() {
+        long count = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += buckets[b].sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return sum of every recorded wait in nanoseconds
+     */
+    long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @param fraction - 0 to 1, ie 0.99 for the 99th percentile
+     * @return upper edge of the bucket that percentile falls in, in nanoseconds. 0 if nothing was recorded
+     */
+    long percentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            counts[b] = buckets[b].sum();
+            total += counts[b];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= Math.max(1, rank)) {
+                return b == 0 ? 0 : (1L << b) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
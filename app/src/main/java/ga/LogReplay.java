@@ -0,0 +1,51 @@
+package ga;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Streams a generation log(see GenerationLog) out as CSV, one line per generation:
+ * generation,best,mean,worst,layout
+ * the layout is the best one of the generation written top row first with rows split by /, the same as
+ * PackedLayout.toString
+ *
+ * usage: java ga.LogReplay log [out.csv] [--every n]
+ * without out.csv the CSV goes to stdout, --every n keeps only every nth generation
+ */
+public class LogReplay {
+
+    public static void main(String[] args) throws IOException {
+        String log = null;
+        String out = null;
+        int every = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--every")) {
+                every = Integer.parseInt(args[++i]);
+            } else if (log == null) {
+                log = args[i];
+            } else {
+                out = args[i];
+            }
+        }
+        if (log == null || every < 1) {
+            System.out.println("usage: LogReplay log [out.csv] [--every n]");
+            System.exit(1);
+        }
+
+        try (GenerationLog.Reader reader = new GenerationLog.Reader(Paths.get(log));
+             Writer csv = out == null ? new BufferedWriter(new OutputStreamWriter(System.out))
+                     : Files.newBufferedWriter(Paths.get(out))) {
+            csv.write("generation,best,mean,worst,layout\n");
+            long size = reader.size();
+            for (long i = 0; i < size; i += every) {
+                GenerationLog.Record r = reader.read(i);
+                csv.write(r.generation + "," + r.best + "," + r.mean + "," + r.worst + ","
+                        + r.layout.toString().replace('\n', '/') + "\n");
+            }
+        }
+    }
+}
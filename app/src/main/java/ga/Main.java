@@ -1,3 +1,5 @@
+package ga;
+
 import java.io.*;
 
 import javafx.application.Application;
@@ -23,7 +25,10 @@ public class Main extends Application {//is it waking up while putting in queue?
     public void start(Stage primaryStage) throws IOException{
 
 
-        Parent root = FXMLLoader.load(getClass().getResource("GA.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("GA.fxml"));
+        Parent root = loader.load();
+        Controller controller = loader.getController();
+        primaryStage.setOnHidden(e -> controller.closeHistory());//the log file is deleted on exit, let go of it first
         primaryStage.setTitle("csc375_hw01");
         primaryStage.setScene(new Scene(root, 800, 600));
         primaryStage.show();
@@ -0,0 +1,196 @@
+package ga;
+
+import java.util.function.IntSupplier;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Runtime counters for one engine run. The engine and the factories record into it as they go, anything else
+ * reads it with poll(), which gives the rates since the previous poll so it can be called from a timer.
+ * the same numbers are also sent to JFR, see GaEvents
+ *
+ * generation counters are only written by the engine thread, the wait histograms are written by every factory
+ */
+public final class Metrics {
+
+    private final LatencyHistogram schedulerWait = new LatencyHistogram();//factories parked between generations
+    private final LatencyHistogram exchangerWait = new LatencyHistogram();//factories blocked on their crossover partner
+
+    //written by the engine thread only
+    private volatile int generations;//number of the last finished generation
+    private volatile int finished;//generations finished in this run, differs from the above when resumed from a checkpoint
+    private volatile long evaluations;
+    private volatile double bestFitness;
+    private volatile double meanFitness;
+
+    private volatile IntSupplier backlog = () -> 0;
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    //time, generations and evaluations at the previous poll, for rates. JFR samples keep their own so they don't skew poll()
+    private final long[] lastPoll = {System.nanoTime(), 0, 0};
+    private final long[] lastSample = {System.nanoTime(), 0, 0};
+
+    private final Runnable periodic = this::emitPipelineEvent;
+
+    /**
+     * @param backlog - how many factories have reported and are waiting for the engine
+     */
+    void setBacklog(IntSupplier backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * @param queueDepth - how many finished generations are waiting for whoever listens to the engine, ie 1 while the gui hasn't picked up the newest one
+     */
+    public void setQueueDepth(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * called by the engine for every finished generation
+     * @param gen         - the finished generation
+     * @param evaluations - fitness evaluations the whole population has done so far
+     */
+    void recordGeneration(Generation gen, long evaluations) {
+        double mean = gen.getMean();
+        double best = gen.getBest() != null ? gen.getBest().getFitness() : 0;
+        int backlogNow = backlog.getAsInt();
+
+        GaEvents.GenerationEvent event = new GaEvents.GenerationEvent();
+        if (event.shouldCommit()) {
+            event.generation = gen.getGenNum();
+            event.bestFitness = best;
+            event.meanFitness = mean;
+            event.evaluations = evaluations - this.evaluations;
+            event.backlog = backlogNow;
+            event.commit();
+        }
+
+        this.bestFitness = best;
+        this.meanFitness = mean;
+        this.evaluations = evaluations;
+        this.generations = gen.getGenNum();
+        this.finished = finished + 1;
+    }
+
+    /**
+     * @param nanos - how long a factory was parked in the scheduler
+     */
+    void recordSchedulerWait(long nanos) {
+        schedulerWait.record(nanos);
+    }
+
+    /**
+     * @param nanos - how long a factory was blocked in the crossover Exchanger
+     */
+    void recordExchangerWait(long nanos) {
+        exchangerWait.record(nanos);
+    }
+
+    /**
+     * sends a ga.Pipeline event every second while a flight recording is running
+     */
+    void start() {
+        FlightRecorder.addPeriodicEvent(GaEvents.PipelineEvent.class, periodic);
+    }
+
+    void stop() {
+        FlightRecorder.removePeriodicEvent(periodic);
+    }
+
+    private void emitPipelineEvent() {
+        Snapshot s;
+        synchronized (this) {
+            s = snapshot(lastSample);
+        }
+        GaEvents.PipelineEvent event = new GaEvents.PipelineEvent();
+        event.generationsPerSecond = s.generationsPerSecond;
+        event.evaluationsPerSecond = s.evaluationsPerSecond;
+        event.backlog = s.backlog;
+        event.queueDepth = s.queueDepth;
+        event.schedulerWaitP99 = s.schedulerWaitP99;
+        event.exchangerWaitP99 = s.exchangerWaitP99;
+        event.commit();
+    }
+
+    /**
+     * @return the current counters, with rates worked out since the last call
+     */
+    public synchronized Snapshot poll() {
+        return snapshot(lastPoll);
+    }
+
+    /**
+     * @param since - time, generations and evaluations of the previous sample, updated to now
+     */
+    private Snapshot snapshot(long[] since) {
+        long now = System.nanoTime();
+        int gens = finished;
+        long evals = evaluations;
+        double seconds = Math.max(1, now - since[0]) / 1e9;
+        Snapshot s = new Snapshot(generations, evals, (gens - since[1]) / seconds, (evals - since[2]) / seconds,
+                bestFitness, meanFitness, backlog.getAsInt(), queueDepth.getAsInt(),
+                schedulerWait.count(), schedulerWait.totalNanos(), schedulerWait.percentile(0.5), schedulerWait.percentile(0.99),
+                exchangerWait.count(), exchangerWait.totalNanos(), exchangerWait.percentile(0.5), exchangerWait.percentile(0.99));
+        since[0] = now;
+        since[1] = gens;
+        since[2] = evals;
+        return s;
+    }
+
+    /**
+     * counters at one point in time, wait times are in nanoseconds
+     */
+    public static final class Snapshot {
+        public final int generations;
+        public final long evaluations;
+        public final double generationsPerSecond;
+        public final double evaluationsPerSecond;
+        public final double bestFitness;
+        public final double meanFitness;
+        public final int backlog;
+        public final int queueDepth;
+        public final long schedulerWaits;
+        public final long schedulerWaitNanos;
+        public final long schedulerWaitP50;
+        public final long schedulerWaitP99;
+        public final long exchangerWaits;
+        public final long exchangerWaitNanos;
+        public final long exchangerWaitP50;
+        public final long exchangerWaitP99;
+
+        Snapshot(int generations, long evaluations, double generationsPerSecond, double evaluationsPerSecond,
+                 double bestFitness, double meanFitness, int backlog, int queueDepth,
+                 long schedulerWaits, long schedulerWaitNanos, long schedulerWaitP50, long schedulerWaitP99,
+                 long exchangerWaits, long exchangerWaitNanos, long exchangerWaitP50, long exchangerWaitP99) {
+            this.generations = generations;
+            this.evaluations = evaluations;
+            this.generationsPerSecond = generationsPerSecond;
+            this.evaluationsPerSecond = evaluationsPerSecond;
+            this.bestFitness = bestFitness;
+            this.meanFitness = meanFitness;
+            this.backlog = backlog;
+            this.queueDepth = queueDepth;
+            this.schedulerWaits = schedulerWaits;
+            this.schedulerWaitNanos = schedulerWaitNanos;
+            this.schedulerWaitP50 = schedulerWaitP50;
+            this.schedulerWaitP99 = schedulerWaitP99;
+            this.exchangerWaits = exchangerWaits;
+            this.exchangerWaitNanos = exchangerWaitNanos;
+            this.exchangerWaitP50 = exchangerWaitP50;
+            this.exchangerWaitP99 = exchangerWaitP99;
+        }
+
+        public String toString() {
+            return String.format("gen=%d gens/s=%.1f evals/s=%.0f best=%.5f mean=%.5f backlog=%d queue=%d"
+                            + " schedWait(n=%d p50=%s p99=%s) exchWait(n=%d p50=%s p99=%s)",
+                    generations, generationsPerSecond, evaluationsPerSecond, bestFitness, meanFitness, backlog, queueDepth,
+                    schedulerWaits, micros(schedulerWaitP50), micros(schedulerWaitP99),
+                    exchangerWaits, micros(exchangerWaitP50), micros(exchangerWaitP99));
+        }
+
+        private static String micros(long nanos) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+    }
+}
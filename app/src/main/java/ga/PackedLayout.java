@@ -0,0 +1,232 @@
+package ga;
+
+import java.util.Arrays;
+
+/**
+ * A factory layout stored 3 bits per station, 21 stations to a long. A 7x7 layout fits in 3 words so copying,
+ * comparing and hashing a layout is a handful of word operations instead of walking 7 int arrays.
+ *
+ * stations are numbered row major, cell = y * width + x, using the same x/y as the old int[x][y] layouts.
+ * station codes are whatever FitnessRules names, anything from 0 to 7 fits in the 3 bits and 4 is always empty.
+ *
+ * a layout either owns its words or is a view of a run of words inside a bigger array(see Population, which keeps
+ * every layout of the population back to back in one long[]). views behave exactly like owned layouts
+ */
+public final class PackedLayout {
+
+    static final int BITS = 3;
+    static final int CELLS_PER_WORD = 64 / BITS;//21, top bit of each word is unused
+    static final long MASK = (1L << BITS) - 1;
+    private static final long LOW_BITS = 0x1249249249249249L;//the 1s bit of all 21 stations
+    private static final long EMPTY_WORD = LOW_BITS * Fitness.EMPTY;//every station empty
+
+    private final int width;
+    private final int height;
+    private final long[] words;
+    private final int base;//index of this layout's first word in words
+    private final int wordCount;
+
+    /**
+     * @param width  - number of columns(x)
+     * @param height - number of rows(y)
+     */
+    public PackedLayout(int width, int height) {
+        this(width, height, new long[wordsFor(width * height)], 0);
+    }
+
+    /**
+     * a view of a layout stored somewhere in a bigger array, changes go straight to that array
+     * @param width  - number of columns(x)
+     * @param height - number of rows(y)
+     * @param words  - array holding the layout
+     * @param base   - index of the layout's first word
+     */
+    PackedLayout(int width, int height, long[] words, int base) {
+        this.width = width;
+        this.height = height;
+        this.words = words;
+        this.base = base;
+        this.wordCount = wordsFor(width * height);
+    }
+
+    /**
+     * @param cells - number of stations
+     * @return how many longs it takes to hold that many stations
+     */
+    static int wordsFor(int cells) {
+        return (cells + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+    }
+
+    public int get(int x, int y) {
+        return getCell(y * width + x);
+    }
+
+    public void set(int x, int y, int value) {
+        setCell(y * width + x, value);
+    }
+
+    public int getCell(int cell) {
+        int shift = (cell % CELLS_PER_WORD) * BITS;
+        return (int) ((words[base + cell / CELLS_PER_WORD] >>> shift) & MASK);
+    }
+
+    public void setCell(int cell, int value) {
+        int word = base + cell / CELLS_PER_WORD;
+        int shift = (cell % CELLS_PER_WORD) * BITS;
+        words[word] = (words[word] & ~(MASK << shift)) | ((value & MASK) << shift);
+    }
+
+    /**
+     * Zobrist hash of one station, the hash of a layout is the xor of this over every cell so changing a station
+     * only takes xor-ing out the old code and xor-ing in the new one. instead of a random table the value is a
+     * splitmix64 finalizer over the cell and code(a table would be 40MB for a 1024x1024 layout)
+     */
+    static long zobrist(int cell, int value) {
+        long z = (cell * 8L + value + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return number of stations that aren't empty spots. a word at a time: xor with EMPTY_WORD leaves the empty
+     * stations 0, or-ing each station's bits down into its 1s bit leaves only those clear, and a popcount counts them.
+     * unused stations at the end of the last word are 0, which isn't empty
+     */
+    public int countShapes() {
+        int empty = 0;
+        for (int w = 0; w < wordCount; w++) {
+            long diff = words[base + w] ^ EMPTY_WORD;
+            empty += Long.bitCount(~(diff | diff >>> 1 | diff >>> 2) & LOW_BITS);
+        }
+        return width * height - empty;
+    }
+
+    /**
+     * @return Zobrist hash of the whole layout, see zobrist
+     */
+    long zobristHash() {
+        long hash = 0;
+        for (int cell = 0; cell < width * height; cell++) {
+            hash ^= zobrist(cell, getCell(cell));
+        }
+        return hash;
+    }
+
+    /**
+     * unpacks one row into a byte buffer, walking the words in order
+     * @param y - row to read
+     * @param dst - where to put the stations
+     * @param offset - index in dst for x = 0
+     */
+    public void readRow(int y, byte[] dst, int offset) {
+        int cell = y * width;
+        int word = base + cell / CELLS_PER_WORD;
+        int first = cell % CELLS_PER_WORD;//of the row within its first word
+        long bits = words[word] >>> (first * BITS);
+        int x = 0;
+        while (true) {//a word at a time, so the inner loop doesn't check for the end of the word
+            int end = Math.min(width, x + CELLS_PER_WORD - first);
+            for (; x < end; x++) {
+                dst[offset + x] = (byte) (bits & MASK);
+                bits >>>= BITS;
+            }
+            if (x == width) {
+                return;
+            }
+            bits = words[++word];
+            first = 0;
+        }
+    }
+
+    /**
+     * overwrite this layout with another of the same size
+     * @param other - layout to copy from
+     */
+    public void copyFrom(PackedLayout other) {
+        System.arraycopy(other.words, other.base, words, base, wordCount);
+    }
+
+    /**
+     * @return number of longs backing this layout, for writing it out word by word
+     */
+    int getWordCount() {
+        return wordCount;
+    }
+
+    long getWord(int word) {
+        return words[base + word];
+    }
+
+    void setWord(int word, long bits) {
+        words[base + word] = bits;
+    }
+
+    public PackedLayout copy() {
+        PackedLayout copy = new PackedLayout(width, height);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCells() {
+        return width * height;
+    }
+
+    /**
+     * @return the layout unpacked to the old int[x][y] form, for display
+     */
+    public int[][] toArray() {
+        int[][] array = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                array[x][y] = get(x, y);
+            }
+        }
+        return array;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedLayout)) {
+            return false;
+        }
+        PackedLayout other = (PackedLayout) o;
+        return width == other.width && height == other.height
+                && Arrays.equals(words, base, base + wordCount, other.words, other.base, other.base + wordCount);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int w = base; w < base + wordCount; w++) {
+            hash = 31 * hash + Long.hashCode(words[w]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {//top row first, . for empty spots
+        StringBuilder sb = new StringBuilder();
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = 0; x < width; x++) {
+                int v = get(x, y);
+                sb.append(v == Fitness.EMPTY ? '.' : (char) ('0' + v));
+            }
+            if (y > 0) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
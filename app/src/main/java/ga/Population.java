@@ -0,0 +1,71 @@
+package ga;
+
+/**
+ * Struct of arrays store for a whole population: every layout back to back in one long[], and the raw score,
+ * fitness and generation of every member in parallel columns indexed by factory id. ShapeFactory works on its row
+ * through a PackedLayout view, so walking the population is a walk over a few flat arrays instead of k objects
+ * each pointing at its own array.
+ *
+ * a finished Generation keeps a copy of its best member(copyOf(id)), and of all the columns(copyOf) when it's
+ * checkpointed or migrated from, which is a handful of array copies instead of a snapshot object per factory
+ */
+final class Population {
+
+    final int size;
+    final int width;
+    final int height;
+    final int words;//per layout
+    final long[] layouts;//member i is words [i * words, (i + 1) * words)
+    final int[] raw;
+    final double[] fitness;
+    final int[] generation;
+
+    /**
+     * @param size   - number of members
+     * @param width  - columns in a layout
+     * @param height - rows in a layout
+     */
+    Population(int size, int width, int height) {
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        this.words = PackedLayout.wordsFor(width * height);
+        this.layouts = new long[Math.multiplyExact(size, words)];
+        this.raw = new int[size];
+        this.fitness = new double[size];
+        this.generation = new int[size];
+    }
+
+    /**
+     * @param id - member
+     * @return a view of that member's layout, writes to it change the population
+     */
+    PackedLayout layout(int id) {
+        return new PackedLayout(width, height, layouts, id * words);
+    }
+
+    /**
+     * @return a copy of every column, later changes to this population don't show in it
+     */
+    Population copyOf() {
+        Population copy = new Population(size, width, height);
+        System.arraycopy(layouts, 0, copy.layouts, 0, layouts.length);
+        System.arraycopy(raw, 0, copy.raw, 0, size);
+        System.arraycopy(fitness, 0, copy.fitness, 0, size);
+        System.arraycopy(generation, 0, copy.generation, 0, size);
+        return copy;
+    }
+
+    /**
+     * @param id - member to copy
+     * @return a population of one holding a copy of that member
+     */
+    Population copyOf(int id) {
+        Population copy = new Population(1, width, height);
+        System.arraycopy(layouts, id * words, copy.layouts, 0, words);
+        copy.raw[0] = raw[id];
+        copy.fitness[0] = fitness[id];
+        copy.generation[0] = generation[id];
+        return copy;
+    }
+}
@@ -0,0 +1,731 @@
+package ga;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Exchanger;
+
+/**
+ * One member of the population. In the thread per factory mode it runs as its own thread(run()), in the pooled
+ * mode it is plain data and the engine calls step() on it from a ForkJoinPool.
+ *
+ * the factory's layout, score and generation number live in its slot of a Population, the factory itself only
+ * holds the working buffers and the threading state
+ */
+public class ShapeFactory implements Runnable {
+
+    /**
+     * how evolve picks the surviving child from the best ones. all of them take bounded time, don't allocate and
+     * cope with every child having the same fitness(including 0, which is uniform)
+     * TOURNAMENT - best of 3 children drawn at random
+     * ROULETTE - chance proportional to fitness, drawn from an alias table
+     * RANK - chance proportional to place from the bottom, so only the order of the fitnesses matters
+     */
+    public enum Selection { TOURNAMENT, ROULETTE, RANK }
+
+    /**
+     * how children and crossover partners change a layout
+     * RANDOM - a mutated cell becomes any station and crossover swaps one cell, so the number of shapes drifts away
+     *          from n and a lot of evaluations go on layouts that don't place n shapes
+     * SWAP - the number of shapes never changes: a mutated shape becomes another shape and any other mutated cell
+     *        trades places with a random cell, crossover swaps every cell from a random point on and then empties
+     *        or fills random cells until the count is back(one pass over the layout, see restoreShapeCount)
+     */
+    public enum Operators { RANDOM, SWAP }
+
+    private static final int TOURNAMENT_SIZE = 3;
+
+    private int id;//index in the engine's factory array, 0 to k-1
+
+    //final and ThreadLocal<> for everything possible
+    private final Population population;//where this factory's state lives
+    private final int slot;//this factory's index in population
+    private final PackedLayout layout;//view of the layout in population
+    private boolean firstGen;
+
+    //population columns used for this factory:
+    //generation - generation number
+    //fitness - number between 1 and 0 that denotes fitness of layout, higher is better. Can never reach 1, but in this implementation 0 is possible
+    //raw - un-normalized fitness, kept so mutations can adjust it instead of rescoring
+
+    //evolve() buffers, made once and reused so a generation doesn't allocate
+    private PackedLayout[] children;
+    private double[] childFitness;
+    private int[] childRaw;
+    private int[] childOrder;
+    private int[] mutations;//cell, old station, new station of every change to the current child, only used with a cache
+    private long[] childHash;
+    private double[] aliasChance;//roulette alias table, by place in childOrder
+    private int[] alias;
+    private int[] aliasWork;//small places from the front, large ones from the back
+
+    static final double DEFAULT_MUTATION_RATE = 1.0 / 49;
+
+    private FitnessCache cache;//shared by every factory, null if scores aren't cached
+    private double logKeep = Math.log1p(-DEFAULT_MUTATION_RATE);//log of the chance a cell isn't mutated, for the skips
+    private Selection selection = Selection.ROULETTE;
+    private Operators operators = Operators.SWAP;
+    private long hash;//Zobrist hash of layout, only kept up to date while there is a cache
+    private SplittableRandom random = new SplittableRandom();//this factory's own stream, the engine splits it off the run's seed
+
+    private CountDownLatch start;
+    private IdRing ready;
+    private GenerationScheduler scheduler;
+    private Metrics metrics;
+    private int n;
+    private long evaluations;//fitness evaluations this factory has done, only read by the engine between generations
+
+    private boolean crossover;//if true, do crossover
+    private Exchanger<PackedLayout> crossoverExchanger;
+    private PackedLayout crossoverCopy;//what the partner crosses over with, only changed while the partner is parked
+    private int crossoverRow;
+    private int crossoverColumn;
+
+    /**
+     *init layout and begin reproducing
+     * @param id - this factory's id, also its slot in population
+     * @param n - number of shapes
+     * @param population - the whole population's store
+     * @param start - when released this thread starts
+     * @param ready - where this factory reports its id when it finished a generation
+     * @param scheduler - holds this factory until the engine releases the next generation
+     * @param metrics - where crossover waits are recorded
+     */
+    ShapeFactory(int id, int n, Population population, CountDownLatch start, IdRing ready, GenerationScheduler scheduler, Metrics metrics){
+        this(id, n, population, id);
+        this.start = start;
+        this.ready = ready;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * a factory with a population of its own, stepped by whoever made it
+     * @param id - this factory's id
+     * @param n - number of shapes
+     * @param width - number of columns in the layout
+     * @param height - number of rows in the layout
+     */
+    public ShapeFactory(int id, int n, int width, int height){
+        this(id, n, new Population(1, width, height), 0);
+    }
+
+    /**
+     * a factory that is stepped by the engine instead of running as its own thread
+     * @param id - this factory's id
+     * @param n - number of shapes
+     * @param population - store holding this factory's state
+     * @param slot - this factory's index in population
+     */
+    ShapeFactory(int id, int n, Population population, int slot){
+        this.id = id;
+        this.n = n;
+        this.population = population;
+        this.slot = slot;
+        this.layout = population.layout(slot);
+        firstGen = true;
+        population.generation[slot] = 1;
+        crossoverExchanger = null;
+        crossover = false;
+    }
+
+    /**
+     * picks up from a checkpoint instead of generating a new layout on the first step
+     * @param saved - layout to continue from
+     * @param generation - generation the layout was saved at
+     */
+    void restore(PackedLayout saved, int generation){
+        replaceLayout(saved);
+        population.generation[slot] = generation;
+        firstGen = false;
+    }
+
+    /**
+     * swaps in a whole new layout and scores it, for checkpoints and migrants from other islands.
+     * only call when the factory is between generations
+     * @param replacement - layout to copy
+     */
+    void replaceLayout(PackedLayout replacement){
+        layout.copyFrom(replacement);
+        population.raw[slot] = Fitness.rawScore(layout);
+        population.fitness[slot] = Fitness.normalize(population.raw[slot], layout.getCells());
+        if (cache != null) {
+            hash = layout.zobristHash();
+        }
+    }
+
+    public int getGenNum(){
+        return population.generation[slot];
+    }
+
+    int[] getChildOrder(){//for the benchmarks, child indices best first as of the last evolve
+        return childOrder;
+    }
+
+    public int getId(){
+        return id;
+    }
+
+    long getEvaluations(){
+        return evaluations;
+    }
+
+    /**
+     * @param rate - chance each cell of a child is mutated, 0 to 1
+     */
+    void setMutationRate(double rate){
+        logKeep = Math.log1p(-rate);
+    }
+
+    /**
+     * @param selection - how the surviving child is picked
+     */
+    void setSelection(Selection selection){
+        this.selection = selection;
+    }
+
+    /**
+     * @param operators - how mutation and crossover change layouts
+     */
+    void setOperators(Operators operators){
+        this.operators = operators;
+    }
+
+    /**
+     * only call between steps
+     * @param random - stream every random choice this factory makes comes from, no other factory may use it
+     */
+    void setRandom(SplittableRandom random){
+        this.random = random;
+    }
+
+    /**
+     * @param cache - score cache shared with the rest of the population, null for none
+     */
+    void setCache(FitnessCache cache){
+        this.cache = cache;
+        if (cache != null && !firstGen) {
+            hash = layout.zobristHash();
+        }
+    }
+
+    public String getName(){//only used for thread names and debug output
+        return "F" + id;
+    }
+
+    public void run(){//run the thread... constantly evolves, waiting between each evolution for the engine to pair it up for crossover
+        try{
+            start.await();//sync initial run
+            do {//no stop flag here: a released factory always finishes its step so its crossover partner isn't left waiting
+                step();
+                ready.put(id);
+            } while (scheduler.awaitRelease(id));//false once the engine shuts down
+        }catch(InterruptedException e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    /**
+     * does one generation of work, creates the layout on the first call and crosses over and evolves after that
+     * @throws InterruptedException - if interrupted while waiting on the crossover partner
+     */
+    public void step() throws InterruptedException {
+        if (firstGen) {//if initial generation, create itself
+            generate(n, layout.getCells());
+            population.raw[slot] = Fitness.rawScore(layout);
+            population.fitness[slot] = Fitness.normalize(population.raw[slot], layout.getCells());
+            evaluations++;
+            if (cache != null) {
+                hash = layout.zobristHash();
+            }
+            firstGen = false; //no longer first gen
+        } else {//evolve and crossover
+            population.generation[slot]++;
+            //do crossover
+
+            if (crossover) {
+                crossover();
+                crossoverExchanger = null;
+                crossover = false;
+                //turn croossover exchanger null after? also do a check for if null with sout
+            }
+            //mutation after crossover
+            evolve(10);
+        }
+    }
+
+    /**
+     * evolves by creating 10 children(one of which is itself) and randomly choosing one to survive(weighted by fitness) and sets those values to this factory
+     * @param childrenNum - how many children to create, possibly not a variable number
+     */
+    void evolve(int childrenNum){
+        if (children == null || children.length != childrenNum + 1) {//first call, set up buffers reused every generation
+            children = new PackedLayout[childrenNum + 1];
+            for (int i = 1; i <= childrenNum; i++) {
+                children[i] = new PackedLayout(layout.getWidth(), layout.getHeight());
+            }
+            childFitness = new double[childrenNum + 1];
+            childRaw = new int[childrenNum + 1];
+            childOrder = new int[childrenNum + 1];
+            mutations = new int[3 * 8];
+            childHash = new long[childrenNum + 1];
+            aliasChance = new double[childrenNum + 1];
+            alias = new int[childrenNum + 1];
+            aliasWork = new int[childrenNum + 1];
+        }
+        SplittableRandom random = this.random;
+
+        children[0] = this.layout;//add self to children(a form of elitism) to give some chance of continuity
+        //helps stabilize randomness to keep progress, since a degressive evolution could mess with algorithm
+        childFitness[0] = population.fitness[slot];
+        childRaw[0] = population.raw[slot];
+        childHash[0] = this.hash;
+
+        for(int i = 1; i <= childrenNum; i++) {
+            PackedLayout childLayout = children[i];
+            childLayout.copyFrom(layout);//init as parent layout, then change stations
+            int raw = population.raw[slot];//parent score, adjusted below for every station that changes
+            if (cache != null) {
+                raw = mutateCached(childLayout, i, random);
+            } else {
+                //now mutate it, jumping straight from one mutated cell to the next
+                for (int cell = nextMutation(0, random); cell < layout.getCells(); cell = nextMutation(cell + 1, random)) {
+                    int changes = planMutation(childLayout, cell, random, 0);
+                    for (int c = 0; c < changes; c++) {
+                        raw += scoredSet(childLayout, mutations[3 * c], mutations[3 * c + 2]);
+                    }
+                }
+            }
+            raw = verify(childLayout, raw);
+            childRaw[i] = raw;
+            childFitness[i] = Fitness.normalize(raw, layout.getCells());
+        }
+        evaluations += childrenNum;
+        //now choose a child to keep and replace self, weighted towards better fitness
+        for (int i = 0; i <= childrenNum; i++) {//insertion sort of child indices, best first
+            int j = i;
+            while (j > 0 && childFitness[childOrder[j - 1]] < childFitness[i]) {
+                childOrder[j] = childOrder[j - 1];
+                j--;
+            }
+            childOrder[j] = i;
+        }
+        int survivors = childrenNum + 1 - 4;//4 worst are never picked
+
+        int chosen = select(childOrder, survivors, random);
+
+        population.fitness[slot] = childFitness[chosen];//set new vars
+        population.raw[slot] = childRaw[chosen];
+        this.hash = childHash[chosen];
+        if (chosen != 0) {
+            this.layout.copyFrom(children[chosen]);
+        }
+        if (Fitness.VERIFY && cache != null && hash != layout.zobristHash()) {
+            System.out.println("FITNESS ERROR: " + getName() + " zobrist hash drifted");
+            hash = layout.zobristHash();
+        }
+    }
+
+    /**
+     * skip sampling: every cell mutates independently with the same chance, so the number of cells skipped before
+     * the next mutation is geometric and can be drawn directly. a child costs one draw per mutation(about 1 for a
+     * 7x7 layout at 1/49) instead of one per cell
+     * @param cell - first cell that may mutate
+     * @param random - this factory's random
+     * @return the next cell to mutate, getCells() or more when there are no more
+     */
+    private int nextMutation(int cell, SplittableRandom random) {
+        if (logKeep == 0) {//rate 0, nothing ever mutates
+            return Integer.MAX_VALUE;
+        }
+        double skip = Math.log(1 - random.nextDouble()) / logKeep;//1 - u is in (0, 1], so skip is 0 or more
+        return skip < layout.getCells() ? cell + (int) skip : Integer.MAX_VALUE;
+    }
+
+    /**
+     * the same mutation as evolve, but the stations are all changed first and the child is only scored if the cache
+     * hasn't seen that layout. on a miss the changes are undone and redone one at a time with the usual delta scoring
+     * @param child - copy of this factory's layout to mutate
+     * @param index - the child's index, its hash goes in childHash
+     * @param random - this factory's random
+     * @return raw score of the mutated child
+     */
+    private int mutateCached(PackedLayout child, int index, SplittableRandom random) {
+        int changes = 0;
+        long childHash = hash;
+        for (int cell = nextMutation(0, random); cell < child.getCells(); cell = nextMutation(cell + 1, random)) {//same draws as evolve
+            int from = changes;
+            changes = planMutation(child, cell, random, changes);
+            for (int c = from; c < changes; c++) {
+                child.setCell(mutations[3 * c], mutations[3 * c + 2]);
+                childHash ^= PackedLayout.zobrist(mutations[3 * c], mutations[3 * c + 1])
+                        ^ PackedLayout.zobrist(mutations[3 * c], mutations[3 * c + 2]);
+            }
+        }
+        this.childHash[index] = childHash;
+        if (changes == 0) {
+            return population.raw[slot];
+        }
+        int raw = cache.get(childHash);
+        if (raw != FitnessCache.MISSING) {
+            return raw;
+        }
+        for (int c = changes - 1; c >= 0; c--) {//back to the parent
+            child.setCell(mutations[3 * c], mutations[3 * c + 1]);
+        }
+        raw = population.raw[slot];
+        for (int c = 0; c < changes; c++) {
+            raw += scoredSet(child, mutations[3 * c], mutations[3 * c + 2]);
+        }
+        cache.put(childHash, raw);
+        return raw;
+    }
+
+    /**
+     * works out the changes one mutated cell makes and adds them to mutations(cell, old station, new station), they
+     * still have to be made in order. RANDOM gives the cell any station, SWAP keeps the shape count(see Operators)
+     * @param child - layout being mutated
+     * @param cell - the mutated cell
+     * @param random - this factory's random
+     * @param changes - changes already in mutations
+     * @return changes in mutations now
+     */
+    private int planMutation(PackedLayout child, int cell, SplittableRandom random, int changes) {
+        int temp = Fitness.getRules().randomStation(random);//any code the rules name, empty included
+        int old = child.getCell(cell);
+        if (operators == Operators.RANDOM || (old != Fitness.EMPTY && temp != Fitness.EMPTY)) {//or a shape to a shape
+            return temp != old ? recordMutation(cell, old, temp, changes) : changes;
+        }
+        //a shape appearing or disappearing would change the count, trade places with another cell instead
+        int other = random.nextInt(0, child.getCells());
+        int swapped = child.getCell(other);
+        if (swapped == old) {
+            return changes;
+        }
+        changes = recordMutation(cell, old, swapped, changes);
+        return recordMutation(other, swapped, old, changes);
+    }
+
+    private int recordMutation(int cell, int old, int station, int changes) {
+        if (3 * changes == mutations.length) {
+            mutations = Arrays.copyOf(mutations, 2 * mutations.length);
+        }
+        mutations[3 * changes] = cell;
+        mutations[3 * changes + 1] = old;
+        mutations[3 * changes + 2] = station;
+        return changes + 1;
+    }
+
+    /**
+     * sets one cell
+     * @return how much that changed the layout's raw score
+     */
+    private static int scoredSet(PackedLayout layout, int cell, int station) {
+        int x = cell % layout.getWidth();
+        int y = cell / layout.getWidth();
+        int before = Fitness.neighbourhoodScore(layout, x, y);
+        layout.setCell(cell, station);
+        return Fitness.neighbourhoodScore(layout, x, y) - before;
+    }
+
+    /**
+     * picks the surviving child with this factory's Selection
+     * @param order - child indices sorted by fitness descendingly
+     * @param count - how many of the best children can be picked
+     * @param random - this factory's random
+     * @return - index of the randomly selected child, weighted towards better fitness
+     */
+    int select(int[] order, int count, SplittableRandom random) {
+        switch (selection) {
+            case TOURNAMENT: return tournament_selection(order, count, random);
+            case RANK: return rank_selection(order, count, random);
+            default: return roulette_selection(order, count, random);
+        }
+    }
+
+    /**
+     * best of TOURNAMENT_SIZE children drawn with replacement, a tie goes to whichever was drawn first
+     */
+    private int tournament_selection(int[] order, int count, SplittableRandom random) {
+        int best = order[random.nextInt(0, count)];
+        for (int t = 1; t < TOURNAMENT_SIZE; t++) {
+            int challenger = order[random.nextInt(0, count)];
+            if (childFitness[challenger] > childFitness[best]) {
+                best = challenger;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * fitness proportionate, the same odds the old stochastic acceptance loop had but with no rejections: Vose's
+     * alias method builds a table in O(count) that gives a child in one draw. every place gets an even share of
+     * the draws, keeps it with chance aliasChance and passes the rest to its alias.
+     * rules files can score below 0, those children weigh 0 so they're never picked over one that scored above it
+     */
+    private int roulette_selection(int[] order, int count, SplittableRandom random) {
+        double total = 0;
+        for (int p = 0; p < count; p++) {
+            total += Math.max(0, childFitness[order[p]]);
+        }
+        if (!(total > 0)) {//every child scored 0 or less, nothing to weight by
+            return order[random.nextInt(0, count)];
+        }
+        int small = 0;
+        int large = count;
+        for (int p = 0; p < count; p++) {
+            aliasChance[p] = Math.max(0, childFitness[order[p]]) * count / total;
+            if (aliasChance[p] < 1) {
+                aliasWork[small++] = p;
+            } else {
+                aliasWork[--large] = p;
+            }
+        }
+        while (small > 0 && large < count) {
+            int less = aliasWork[--small];
+            int more = aliasWork[large++];
+            alias[less] = more;
+            aliasChance[more] += aliasChance[less] - 1;
+            if (aliasChance[more] < 1) {
+                aliasWork[small++] = more;
+            } else {
+                aliasWork[--large] = more;
+            }
+        }
+        while (small > 0) {//only left over from rounding, they are really 1
+            aliasChance[aliasWork[--small]] = 1;
+        }
+        while (large < count) {
+            aliasChance[aliasWork[large++]] = 1;
+        }
+        int p = random.nextInt(0, count);
+        return order[random.nextDouble() < aliasChance[p] ? p : alias[p]];
+    }
+
+    /**
+     * linear ranking: the worst of count has weight 1, the next 2 and so on up to count for the best. the place is
+     * found from a single draw by inverting the triangular number q(q+1)/2, then children tied with it share their
+     * weight evenly, so equal fitness means equal odds
+     */
+    private int rank_selection(int[] order, int count, SplittableRandom random) {
+        int r = random.nextInt(0, count * (count + 1) / 2);
+        int fromBottom = (int) ((Math.sqrt(8.0 * r + 1) - 1) / 2);
+        int place = count - 1 - Math.min(fromBottom, count - 1);
+        double fitness = childFitness[order[place]];
+        int first = place;
+        while (first > 0 && childFitness[order[first - 1]] == fitness) {
+            first--;
+        }
+        int last = place;
+        while (last < count - 1 && childFitness[order[last + 1]] == fitness) {
+            last++;
+        }
+        return order[first == last ? place : random.nextInt(first, last + 1)];
+    }
+
+    /**
+     * Does crossover with partner by swaping the station at RowXColumn with predetermined partner
+     */
+    private void crossover() throws InterruptedException {
+        PackedLayout send = copyForCrossover();//the partner reads it after the exchange while this one changes layout
+        GaEvents.ExchangerWaitEvent event = new GaEvents.ExchangerWaitEvent();
+        event.begin();
+        long waitStart = System.nanoTime();
+        PackedLayout retrieve = crossoverExchanger.exchange(send);
+        metrics.recordExchangerWait(System.nanoTime() - waitStart);
+        if (event.shouldCommit()) {
+            event.factory = id;
+            event.commit();
+        }
+        crossoverFrom(retrieve, crossoverRow, crossoverColumn);
+    }
+
+    /**
+     * crossover for factories that aren't running as threads, does the same swap between the two directly instead
+     * of through an Exchanger. only call when neither factory is in the middle of a step
+     */
+    public static void crossover(ShapeFactory a, ShapeFactory b, int row, int column) {
+        PackedLayout fromA = a.copyForCrossover();
+        a.crossoverFrom(b.layout, row, column);
+        b.crossoverFrom(fromA, row, column);
+    }
+
+    private PackedLayout copyForCrossover() {
+        if (crossoverCopy == null) {
+            crossoverCopy = new PackedLayout(layout.getWidth(), layout.getHeight());
+        }
+        crossoverCopy.copyFrom(layout);
+        return crossoverCopy;
+    }
+
+    /**
+     * this factory's half of a crossover. RANDOM takes the partner's station at RowXColumn, SWAP takes every cell
+     * from RowXColumn on(row major) and then repairs the shape count
+     * @param partner - the partner's layout as it was before the crossover
+     */
+    private void crossoverFrom(PackedLayout partner, int x, int y) {
+        if (operators == Operators.RANDOM) {
+            replaceStation(x, y, partner.get(x, y));
+            return;
+        }
+        SplittableRandom random = this.random;
+        int shapes = layout.countShapes();
+        for (int cell = y * layout.getWidth() + x; cell < layout.getCells(); cell++) {
+            layout.setCell(cell, partner.getCell(cell));
+        }
+        int now = layout.countShapes();
+        if (now != shapes) {
+            restoreShapeCount(random, now, now - shapes);
+        }
+        //most of the layout may have changed, score it from scratch
+        population.raw[slot] = Fitness.rawScore(layout);
+        population.fitness[slot] = Fitness.normalize(population.raw[slot], layout.getCells());
+        evaluations++;
+        if (cache != null) {
+            hash = layout.zobristHash();
+        }
+    }
+
+    /**
+     * empties random shapes or fills random empty spots until the layout has its shape count back, in one pass over
+     * the layout: selection sampling takes each candidate with chance still needed / candidates left, which picks
+     * exactly that many cells and every set of them is as likely
+     * @param shapes - shapes in the layout now
+     * @param extra  - how many of them are too many, negative when there are too few
+     */
+    private void restoreShapeCount(SplittableRandom random, int shapes, int extra) {
+        boolean fill = extra < 0;//candidates are empty spots rather than shapes
+        int needed = Math.abs(extra);
+        int candidates = fill ? layout.getCells() - shapes : shapes;
+        for (int cell = 0; needed > 0; cell++) {
+            if ((layout.getCell(cell) == Fitness.EMPTY) == fill) {
+                if (random.nextInt(0, candidates) < needed) {
+                    layout.setCell(cell, fill ? Fitness.getRules().randomShape(random) : Fitness.EMPTY);
+                    needed--;
+                }
+                candidates--;
+            }
+        }
+    }
+
+    /**
+     * sets one station and adjusts fitness for it
+     */
+    private void replaceStation(int x, int y, int station) {
+        if (station != layout.get(x, y)) {//only the swapped station and its neighbours can change score
+            if (cache != null) {
+                int cell = y * layout.getWidth() + x;
+                hash ^= PackedLayout.zobrist(cell, layout.getCell(cell)) ^ PackedLayout.zobrist(cell, station);
+            }
+            int before = Fitness.neighbourhoodScore(layout, x, y);
+            layout.set(x, y, station);
+            population.raw[slot] = verify(layout, population.raw[slot] + Fitness.neighbourhoodScore(layout, x, y) - before);
+            population.fitness[slot] = Fitness.normalize(population.raw[slot], layout.getCells());
+            evaluations++;
+        }
+    }
+
+    /**
+     * debug cross check of a delta evaluated score, only does anything with -Dga.verifyFitness=true
+     * @param layout - layout that was scored
+     * @param deltaRaw - raw score worked out from the parent's score
+     * @return the correct raw score
+     */
+    private int verify(PackedLayout layout, int deltaRaw) {
+        if (Fitness.VERIFY) {
+            int fullRaw = Fitness.rawScore(layout);
+            if (fullRaw != deltaRaw) {
+                System.out.println("FITNESS ERROR: " + getName() + " delta score " + deltaRaw + " but full score " + fullRaw);
+                return fullRaw;
+            }
+        }
+        return deltaRaw;
+    }
+
+    /**
+     * fills the layout with exactly n shapes and m - n empty spots
+     * @param n - number of shapes
+     * @param m - number of spaces in the layout
+     */
+    PackedLayout generate(int n, int m){
+        //initialize layout
+
+        ThreadLocal<Integer> emptyCount = new ThreadLocal<>(); //count of how many empty spots there have been made
+        emptyCount.set(0);
+        ThreadLocal<Integer> shapeCount = new ThreadLocal<>();
+        shapeCount.set(0);
+        FitnessRules rules = Fitness.getRules();//the shapes come from there
+
+        for (int j = 0; j < layout.getHeight(); j++) {
+            for (int i = 0; i < layout.getWidth(); i++) {
+                final int chosen;//randomly chosen shape(or empty) if empty spots maxed
+                if (emptyCount.get() == m - n && shapeCount.get() != n) {//empty spaces maxed out, or max shapes placed
+                    //random shape
+                    chosen = rules.randomShape(random);
+                    shapeCount.set(shapeCount.get()+1);
+                } else if (shapeCount.get() == n) {
+                    chosen = Fitness.EMPTY;
+                    emptyCount.set(emptyCount.get() + 1);
+                } else {
+                    //random shape or empty space
+                    chosen = rules.randomStation(random);
+
+                    if (chosen == Fitness.EMPTY) {//chosen is empty space so increment empty count
+                        emptyCount.set(emptyCount.get() + 1);
+                    } else {
+                        shapeCount.set(shapeCount.get()+1);
+                    }
+                }
+                //put in layout
+                layout.set(i, j, chosen);
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Used for creating a snapshot of a factory, a read only view of a slot in a copied population
+     * @param id - id of the factory it was taken from
+     * @param population - copy holding the snapshot
+     * @param slot - index of the snapshot in population
+     */
+    ShapeFactory(int id, Population population, int slot){
+        this.id = id;
+        this.population = population;
+        this.slot = slot;
+        this.layout = population.layout(slot);
+    }
+
+    /**
+     *
+     * @return a snapshot of the current factory
+     */
+    public ShapeFactory getSnapshot(){
+        return new ShapeFactory(id, population.copyOf(slot), 0);
+    }
+
+    /**
+     * calculates normalized fitness of a whole layout, see Fitness for the metric
+     * used for the first generation, mutations and crossover are rescored with Fitness.neighbourhoodScore instead
+     */
+    public double calculateFitness(PackedLayout layout){
+        return Fitness.normalize(Fitness.rawScore(layout), layout.getCells());
+    }
+
+    public void readyCrossover(Exchanger<PackedLayout> e, int row, int column){
+        crossover = true;
+        crossoverExchanger = e;
+        crossoverRow = row;
+        crossoverColumn = column;
+    }
+
+
+    public PackedLayout getLayout(){
+        return layout;
+    }
+
+    public double getFitness(){
+        return population.fitness[slot];
+    }
+}
@@ -0,0 +1,82 @@
+package ga;
+
+/**
+ * Decides when a run is done. The engine checks every condition it was given after each finished generation and
+ * shuts down as soon as one fires, the iteration budget still applies on top as a backstop.
+ *
+ * some conditions remember what they have seen(noImprovement), so make a new one for every run
+ */
+public interface StopCondition {
+
+    /**
+     * @param gen          - the generation that just finished
+     * @param evaluations  - fitness evaluations done so far in this run
+     * @param elapsedNanos - time since the run started
+     * @return true to stop the run
+     */
+    boolean shouldStop(Generation gen, long evaluations, long elapsedNanos);
+
+    /**
+     * @param target - fitness to reach, between 0 and 1
+     * @return stops once the best factory is at least that fit
+     */
+    static StopCondition targetFitness(double target) {
+        return named("reached fitness " + target, (gen, evaluations, elapsedNanos) -> gen.getBest().getFitness() >= target);
+    }
+
+    /**
+     * @param generations - how long the best fitness may stand still
+     * @return stops once the best fitness hasn't gone up for that many generations
+     */
+    static StopCondition noImprovement(int generations) {
+        return new StopCondition() {
+            private double best = Double.NEGATIVE_INFINITY;
+            private int improvedAt;//generation the best last went up
+
+            public boolean shouldStop(Generation gen, long evaluations, long elapsedNanos) {
+                double fitness = gen.getBest().getFitness();
+                if (fitness > best) {
+                    best = fitness;
+                    improvedAt = gen.getGenNum();
+                }
+                return gen.getGenNum() - improvedAt >= generations;
+            }
+
+            public String toString() {
+                return "no improvement in " + generations + " generations";
+            }
+        };
+    }
+
+    /**
+     * @param millis - wall clock budget
+     * @return stops once the run has taken that long
+     */
+    static StopCondition wallClock(long millis) {
+        long nanos = millis * 1_000_000;
+        return named("ran for " + millis + "ms", (gen, evaluations, elapsedNanos) -> elapsedNanos >= nanos);
+    }
+
+    /**
+     * @param budget - number of fitness evaluations
+     * @return stops once the population has done that many
+     */
+    static StopCondition evaluations(long budget) {
+        return named("used " + budget + " evaluations", (gen, evaluations, elapsedNanos) -> evaluations >= budget);
+    }
+
+    /**
+     * gives a condition a name to show when it stops a run
+     */
+    private static StopCondition named(String name, StopCondition condition) {
+        return new StopCondition() {
+            public boolean shouldStop(Generation gen, long evaluations, long elapsedNanos) {
+                return condition.shouldStop(gen, evaluations, elapsedNanos);
+            }
+
+            public String toString() {
+                return name;
+            }
+        };
+    }
+}
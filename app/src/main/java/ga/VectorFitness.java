@@ -0,0 +1,143 @@
+package ga;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD fitness kernel. Rows are unpacked into the same padded byte buffers the scalar kernel uses, then a whole
+ * vector of stations is scored against the row shifted left and right and the rows below and above at once.
+ * the rules are FitnessRules' tables: for each side station << 3 | neighbour indexes a 64 entry byte table, which is
+ * one lane permute with 64 byte lanes(avx-512), or a permute of each half and a blend with 32. isolation bonuses are looked up by
+ * station and only added in lanes whose four neighbours are all empty. whatever is left at the end of a row goes
+ * through FitnessRules.score. rows narrower than a vector are left to the scalar kernel.
+ *
+ * needs --add-modules jdk.incubator.vector to compile and run and at least 32 byte lanes, Fitness falls back to
+ * the scalar kernel otherwise. -Dga.vectorBits=256 forces a narrower vector than the preferred one.
+ * VectorFitnessTest checks it scores exactly like the scalar kernel.
+ */
+final class VectorFitness implements FitnessKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = Integer.getInteger("ga.vectorBits") == null ? ByteVector.SPECIES_PREFERRED
+            : VectorSpecies.of(byte.class, VectorShape.forBitSize(Integer.getInteger("ga.vectorBits")));
+    private static final int TABLE = FitnessRules.CODES * FitnessRules.CODES;
+    //station scores added up lane by lane across rows. kept in memory instead of a ByteVector local, c2 boxes a vector
+    //that is still live at the loop's safepoint, which cost an allocation per vector
+    private static final ThreadLocal<byte[]> SUMS = ThreadLocal.withInitial(() -> new byte[SPECIES.length()]);
+
+    private final FitnessRules rules;
+    private final ByteVector[] low = new ByteVector[4];//by direction, table entries 0 to lanes - 1
+    private final ByteVector[] high = new ByteVector[4];//the rest of the table, null when one vector holds all of it
+    private final ByteVector isolated;//by station
+    private final int flush;//vectors of station scores a byte lane can add up before it could overflow
+
+    VectorFitness() {
+        if (2 * SPECIES.length() < TABLE) {
+            throw new UnsupportedOperationException(SPECIES + " is too narrow for the " + TABLE + " entry rule tables");
+        }
+        rules = Fitness.getRules();
+        for (int d = 0; d < 4; d++) {
+            byte[] table = new byte[Math.max(TABLE, SPECIES.length())];
+            for (int i = 0; i < TABLE; i++) {//i is station << 3 | neighbour
+                table[i] = (byte) rules.pair[(i >>> 3) << 5 | d << 3 | (i & 7)];
+            }
+            low[d] = ByteVector.fromArray(SPECIES, table, 0);
+            high[d] = SPECIES.length() < TABLE ? ByteVector.fromArray(SPECIES, table, SPECIES.length()) : null;
+        }
+        byte[] bonus = new byte[SPECIES.length()];
+        for (int station = 0; station < FitnessRules.CODES; station++) {
+            bonus[station] = (byte) rules.isolated[station];
+        }
+        isolated = ByteVector.fromArray(SPECIES, bonus, 0);
+        int most = 1;
+        for (byte score : rules.neighbourhood) {
+            most = Math.max(most, Math.abs(score));
+        }
+        flush = Byte.MAX_VALUE / most;//25 for the original rules, 1 at worst
+    }
+
+    @Override
+    public int rawScore(PackedLayout layout) {
+        int width = layout.getWidth();
+        int height = layout.getHeight();
+        if (width < SPECIES.length()) {//not one whole vector in a row
+            return Fitness.scalarRawScore(layout);
+        }
+        byte[][] rows = Fitness.rows(width);
+        byte[] below = rows[0];
+        byte[] row = rows[1];
+        byte[] above = rows[2];
+        Fitness.fillRow(layout, height, below);//all empty, nothing below the bottom row
+        Fitness.fillRow(layout, 0, row);
+
+        int upper = SPECIES.loopBound(width);
+        int score = 0;
+        byte[] sums = SUMS.get();//all zero between calls
+        int pending = 0;
+        for (int y = 0; y < height; y++) {
+            Fitness.fillRow(layout, y + 1, above);
+            for (int i = 0; i < upper; i += SPECIES.length()) {//stations i + 1 to i + vector length
+                ByteVector self = ByteVector.fromArray(SPECIES, row, i + 1);
+                ByteVector left = ByteVector.fromArray(SPECIES, row, i);
+                ByteVector right = ByteVector.fromArray(SPECIES, row, i + 2);
+                ByteVector down = ByteVector.fromArray(SPECIES, below, i + 1);
+                ByteVector up = ByteVector.fromArray(SPECIES, above, i + 1);
+
+                //a station's whole score is one neighbourhood entry, so a lane can take flush of them before it overflows
+                ByteVector base = self.lanewise(VectorOperators.LSHL, 3);
+                ByteVector sum = ByteVector.fromArray(SPECIES, sums, 0)
+                        .add(lookup(FitnessRules.LEFT, base.or(left)))
+                        .add(lookup(FitnessRules.RIGHT, base.or(right)))
+                        .add(lookup(FitnessRules.BELOW, base.or(down)))
+                        .add(lookup(FitnessRules.ABOVE, base.or(up)));
+                VectorMask<Byte> alone = left.eq((byte) Fitness.EMPTY).and(right.eq((byte) Fitness.EMPTY))
+                        .and(down.eq((byte) Fitness.EMPTY)).and(up.eq((byte) Fitness.EMPTY));
+                sum.add(isolated.rearrange(self.toShuffle()), alone).intoArray(sums, 0);
+                if (++pending == flush) {
+                    score += drain(sums);
+                    pending = 0;
+                }
+            }
+            for (int x = upper + 1; x <= width; x++) {//tail that doesn't fill a vector
+                score += rules.score(row[x], row[x - 1], row[x + 1], below[x], above[x]);
+            }
+            byte[] temp = below;//roll the buffers up a row
+            below = row;
+            row = above;
+            above = temp;
+        }
+        return pending == 0 ? score : score + drain(sums);
+    }
+
+    /**
+     * adds up the lanes as shorts since the total won't fit in a byte: each short lane holds two byte lanes,
+     * shifting right sign extends the high one and shifting left first does the low one
+     * @param sums - lane totals, left all zero
+     * @return what they add up to
+     */
+    private static int drain(byte[] sums) {
+        ShortVector pairs = ByteVector.fromArray(SPECIES, sums, 0).reinterpretAsShorts();
+        ByteVector.zero(SPECIES).intoArray(sums, 0);
+        return (int) pairs.lanewise(VectorOperators.ASHR, 8)
+                .add(pairs.lanewise(VectorOperators.LSHL, 8).lanewise(VectorOperators.ASHR, 8))
+                .reduceLanesToLong(VectorOperators.ADD);
+    }
+
+    /**
+     * @param direction - which side's table
+     * @param index - station << 3 | neighbour in every lane
+     * @return the table entry for every lane
+     */
+    private ByteVector lookup(int direction, ByteVector index) {
+        if (high[direction] == null) {
+            return low[direction].rearrange(index.toShuffle());
+        }
+        VectorShuffle<Byte> shuffle = index.and((byte) (SPECIES.length() - 1)).toShuffle();//index within either half
+        return low[direction].rearrange(shuffle)
+                .blend(high[direction].rearrange(shuffle), index.compare(VectorOperators.GE, (byte) SPECIES.length()));
+    }
+}
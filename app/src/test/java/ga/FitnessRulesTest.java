@@ -0,0 +1,130 @@
+package ga;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * the shipped fitness.rules has to score exactly like the hand written kernel it replaced, and a rules file has to
+ * be enough to add a shape
+ */
+class FitnessRulesTest {
+
+    /**
+     * every station against every neighbourhood, all 8 codes in every position
+     */
+    @Test
+    void defaultRulesScoreLikeTheOriginalKernel() {
+        FitnessRules rules = FitnessRules.load();
+        for (int i = 0; i < 1 << 15; i++) {
+            int station = i >>> 12;
+            int left = i >>> 9 & 7;
+            int right = i >>> 6 & 7;
+            int below = i >>> 3 & 7;
+            int above = i & 7;
+            assertEquals(originalScore(station, left, right, below, above), rules.score(station, left, right, below, above),
+                    "station " + station + " left " + left + " right " + right + " below " + below + " above " + above);
+        }
+    }
+
+    @Test
+    void anotherShapeIsJustAStationLine() throws IOException {
+        FitnessRules rules = parse("station 0 triangle", "station 4 empty", "station 6 hexagon",
+                "hexagon left hexagon,triangle 3", "hexagon isolated -2");
+        assertEquals(3, rules.score(6, 0, Fitness.EMPTY, Fitness.EMPTY, Fitness.EMPTY));
+        assertEquals(-2, rules.score(6, Fitness.EMPTY, Fitness.EMPTY, Fitness.EMPTY, Fitness.EMPTY));
+
+        SplittableRandom random = new SplittableRandom(1);
+        Set<Integer> shapes = new HashSet<>();
+        Set<Integer> stations = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            shapes.add(rules.randomShape(random));
+            stations.add(rules.randomStation(random));
+        }
+        assertEquals(Set.of(0, 6), shapes);
+        assertEquals(Set.of(0, 4, 6), stations);
+    }
+
+    @Test
+    void codesPastEmptyCountAsShapes() {
+        PackedLayout layout = new PackedLayout(10, 5);//50 stations, 3 words with 13 unused at the end
+        for (int cell = 0; cell < layout.getCells(); cell++) {
+            layout.setCell(cell, Fitness.EMPTY);
+        }
+        assertEquals(0, layout.countShapes());
+        for (int cell = 0; cell < layout.getCells(); cell += 3) {
+            layout.setCell(cell, cell % 8 == Fitness.EMPTY ? 0 : cell % 8);
+        }
+        assertEquals(17, layout.countShapes());
+    }
+
+    @Test
+    void badStationsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> parse("station 0 triangle", "station 8 octagon", "station 4 empty"));
+        assertThrows(IllegalArgumentException.class, () -> parse("station 0 triangle", "station 0 square", "station 4 empty"));
+        assertThrows(IllegalArgumentException.class, () -> parse("station 5 empty"));
+        assertThrows(IllegalArgumentException.class, () -> parse("station 4 empty"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse("station 0 triangle"));
+        assertTrue(e.getMessage().contains("empty"), e.getMessage());
+    }
+
+    private static FitnessRules parse(String... lines) throws IOException {
+        return FitnessRules.parse(new BufferedReader(new StringReader(String.join("\n", lines))), "test rules");
+    }
+
+    /**
+     * the if chains calculateFitness used before the rules file, 0 triangle, 1 upside down triangle, 2 square,
+     * 3 circle and 4 empty
+     */
+    private static int originalScore(int station, int left, int right, int below, int above) {
+        int score = 0;
+        if (station == 0) {
+            if (left == 1) {
+                score++;
+            }
+            if (below == 2 || below == 0 || below == 1) {
+                score++;
+            }
+            if (right == 1) {
+                score++;
+            }
+        } else if (station == 1) {
+            if (left == 0) {
+                score++;
+            }
+            if (right == 0) {
+                score++;
+            }
+            if (above == 2 || above == 0) {
+                score++;
+            }
+        } else if (station == 2) {
+            if (left == 2) {
+                score++;
+            }
+            if (below == 2 || below == 1) {
+                score++;
+            }
+            if (right == 2) {
+                score++;
+            }
+            if (above == 2 || above == 0) {
+                score++;
+            }
+        } else if (station == 3) {
+            if (left == 4 && right == 4 && below == 4 && above == 4) {
+                score += 5;
+            }
+        }
+        return score;
+    }
+}
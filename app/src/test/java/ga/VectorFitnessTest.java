@@ -0,0 +1,133 @@
+package ga;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.SplittableRandom;
+
+import jdk.incubator.vector.ByteVector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * VectorFitness has to score every layout exactly like the scalar kernel. random layouts of all sorts of widths,
+ * so rows narrower than a vector, whole vectors and vectors with a tail of stations left over all get compared.
+ * runs with whatever vector species the machine prefers, -Dga.vectorBits=256 tries the narrower one
+ */
+class VectorFitnessTest {
+
+    private FitnessRules original;
+
+    @BeforeEach
+    void saveRules() {
+        original = Fitness.getRules();
+    }
+
+    @AfterEach
+    void restoreRules() {
+        Fitness.useRules(original);
+    }
+
+    @Test
+    void matchesScalarOnRandomLayouts() {
+        compareOnRandomLayouts(vectorKernel(), 5000, 375);
+    }
+
+    @Test
+    void matchesScalarOnEveryWidthAroundTheLaneCount() {
+        VectorFitness vector = vectorKernel();
+        int lanes = ByteVector.SPECIES_PREFERRED.length();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int width = 1; width <= 3 * lanes + 1; width++) {
+            for (int height : new int[]{1, 2, 7, 33}) {
+                compare(vector, randomLayout(width, height, random));
+            }
+        }
+    }
+
+    @Test
+    void matchesScalarOnEmptyAndFullLayouts() {
+        VectorFitness vector = vectorKernel();
+        for (int width : new int[]{1, 7, 64, 65, 200}) {
+            PackedLayout layout = new PackedLayout(width, 9);
+            compare(vector, layout);//all empty
+            for (int station = 0; station < Fitness.EMPTY; station++) {
+                for (int cell = 0; cell < layout.getCells(); cell++) {
+                    layout.setCell(cell, station);
+                }
+                compare(vector, layout);
+            }
+        }
+    }
+
+    /**
+     * scores as big as the rules allow and below 0, so the byte lanes the vector kernel adds up in have to be
+     * widened before they overflow, and shapes on every code past empty too
+     */
+    @Test
+    void matchesScalarWithExtremeRules() throws IOException {
+        String rules = String.join("\n",
+                "station 0 triangle",
+                "station 1 reverse-triangle",
+                "station 2 square",
+                "station 3 circle",
+                "station 4 empty",
+                "station 5 hexagon",
+                "station 6 star",
+                "station 7 cross",
+                "triangle left triangle,square 25",
+                "hexagon right star,cross -25",
+                "star above hexagon,empty 25",
+                "cross isolated 25",
+                "triangle right reverse-triangle -25",
+                "square below square,circle,empty 25",
+                "square above square -25",
+                "circle left circle 25",
+                "circle right circle 25",
+                "circle below circle 25",
+                "circle above circle 25",
+                "reverse-triangle isolated -25",
+                "circle isolated 25");
+        Fitness.useRules(FitnessRules.parse(new BufferedReader(new StringReader(rules)), "test rules"));
+        compareOnRandomLayouts(vectorKernel(), 2000, 7);
+    }
+
+    private static void compareOnRandomLayouts(VectorFitness vector, int layouts, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < layouts; i++) {
+            int width = 1 + random.nextInt(i % 10 == 0 ? 300 : 70);//mostly around a vector or two, some much wider
+            int height = 1 + random.nextInt(40);
+            compare(vector, randomLayout(width, height, random));
+        }
+    }
+
+    private static PackedLayout randomLayout(int width, int height, SplittableRandom random) {
+        PackedLayout layout = new PackedLayout(width, height);
+        int shapeBias = random.nextInt(6);//vary how crowded the layouts are so stations are isolated sometimes
+        for (int cell = 0; cell < layout.getCells(); cell++) {
+            layout.setCell(cell, random.nextInt(5 + shapeBias) >= 5 ? Fitness.EMPTY : Fitness.getRules().randomStation(random));
+        }
+        return layout;
+    }
+
+    private static void compare(VectorFitness vector, PackedLayout layout) {
+        assertEquals(Fitness.SCALAR.rawScore(layout), vector.rawScore(layout),
+                () -> "kernels disagree on " + layout.getWidth() + "x" + layout.getHeight() + "\n" + layout);
+    }
+
+    /**
+     * built after any useRules, it copies the rules into its tables
+     */
+    private static VectorFitness vectorKernel() {
+        try {
+            return new VectorFitness();
+        } catch (UnsupportedOperationException e) {
+            assumeTrue(false, e.getMessage());
+            return null;
+        }
+    }
+}
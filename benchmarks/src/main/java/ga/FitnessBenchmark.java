@@ -0,0 +1,42 @@
+package ga;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Whole layout scoring with each kernel, what ShapeFactory.calculateFitness costs at different layout sizes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class FitnessBenchmark {
+
+    @Param({"7", "64", "256", "1024"})
+    int size;
+
+    @Param({"scalar", "vector"})
+    String kernel;
+
+    private FitnessKernel fitnessKernel;
+    private PackedLayout layout;
+
+    @Setup
+    public void setup() {
+        fitnessKernel = Fitness.loadKernel(kernel);
+        layout = new PackedLayout(size, size);
+        SplittableRandom random = new SplittableRandom(375);
+        for (int cell = 0; cell < layout.getCells(); cell++) {
+            layout.setCell(cell, random.nextInt(5));
+        }
+    }
+
+    @Benchmark
+    public int calculateFitness() {
+        return fitnessKernel.rawScore(layout);
+    }
+}
@@ -0,0 +1,112 @@
+package ga;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One full headless generation: crossover pairing, evolving every factory and collecting the generation.
+ * cacheEntries > 0 shares a FitnessCache between the factories.
+ *
+ * mode picks how the factories run, see GaEngine.Mode. pool steps generations itself on the ForkJoinPool. threads
+ * and virtual keep the engine running on a thread of its own and every operation waits for the listener to hear of
+ * the next finished generation, so all three score generations per second. threads needs a processor per factory,
+ * on a smaller machine pretend with
+ *   -p mode=threads,pool -p k=16 -jvmArgsAppend "--add-modules jdk.incubator.vector -XX:ActiveProcessorCount=16"
+ * virtual needs Java 21
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class GenerationBenchmark {
+
+    @Param({"16", "256", "4096"})
+    int k;
+
+    @Param({"7", "64"})
+    int size;
+
+    @Param({"0", "65536"})
+    int cacheEntries;
+
+    @Param({"pool"})
+    String mode;
+
+    private GaEngine engine;
+    private int genNum;
+
+    //threads and virtual only
+    private Thread runner;
+    private final Semaphore finished = new Semaphore(0);//a permit per finished generation
+    private volatile boolean stopping;
+    private volatile boolean done;//run() returned or threw
+    private volatile Throwable failure;
+
+    @Setup(Level.Trial)
+    public void setup() throws InterruptedException {
+        GaEngine.Mode engineMode = GaEngine.Mode.valueOf(mode.toUpperCase());
+        engine = new GaEngine(size * size * 32 / 49, size, size, k, Integer.MAX_VALUE, 375);
+        engine.setMode(engineMode);
+        engine.setFitnessCache(cacheEntries);
+        if (engineMode == GaEngine.Mode.POOL) {
+            engine.startPooled();
+            genNum = 1;
+            engine.stepPooled(genNum++);//first generation creates the layouts
+            return;
+        }
+        if (engineMode == GaEngine.Mode.THREADS && Runtime.getRuntime().availableProcessors() < k) {
+            throw new IllegalStateException("threads mode needs " + k + " processors, run with -jvmArgsAppend"
+                    + " \"--add-modules jdk.incubator.vector -XX:ActiveProcessorCount=" + k + "\"");
+        }
+        engine.setListener(gen -> finished.release());
+        engine.addStopCondition((gen, evaluations, elapsedNanos) -> stopping);
+        runner = new Thread(() -> {
+            try {
+                engine.run();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                done = true;
+                finished.release();//wake up a waiting generationStep so it sees done
+            }
+        }, "engine");
+        runner.setDaemon(true);
+        runner.start();
+        awaitGeneration();//first generation creates the layouts
+    }
+
+    @Setup(Level.Iteration)
+    public void forgetGenerations() {
+        finished.drainPermits();//the engine kept going between iterations, don't count what it did then
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (runner == null) {
+            engine.stopPooled();
+            return;
+        }
+        stopping = true;//the next generation to finish stops the run
+        runner.join();
+    }
+
+    @Benchmark
+    public Generation generationStep() throws InterruptedException {
+        if (runner == null) {
+            return engine.stepPooled(genNum++);
+        }
+        awaitGeneration();
+        return null;//the generation went to the listener on the engine thread
+    }
+
+    private void awaitGeneration() throws InterruptedException {
+        finished.acquire();
+        if (done) {
+            throw new IllegalStateException("the engine stopped running", failure);
+        }
+    }
+}
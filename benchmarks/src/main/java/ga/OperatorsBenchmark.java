@@ -0,0 +1,78 @@
+package ga;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Fitness evaluations a pooled run takes to find a layout with exactly n shapes and at least the target fitness,
+ * with the original operators(RANDOM) against the ones that keep the shape count(SWAP). RANDOM's best layouts
+ * usually aren't feasible, so only layouts with n shapes count towards the target.
+ *
+ * every invocation is a whole run from a new seed, the evaluations it used and whether it got there come out as
+ * the evaluations and reached counters(per iteration, the summary line adds them up over the iterations). runs that
+ * don't get there stop at k * 20000 iterations
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class OperatorsBenchmark {
+
+    private static final int N = 32;
+    private static final int M = 49;
+
+    @Param({"RANDOM", "SWAP"})
+    ShapeFactory.Operators operators;
+
+    @Param({"0.3"})
+    double target;
+
+    @Param({"64"})
+    int k;
+
+    private long seed = 375;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long evaluations;
+        public long reached;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            evaluations = 0;
+            reached = 0;
+        }
+    }
+
+    @Benchmark
+    public Generation toTarget(Counters counters) {
+        GaEngine engine = new GaEngine(N, M, k, k * 20000, seed++);
+        engine.setMode(GaEngine.Mode.POOL);
+        engine.setOperators(operators);
+        engine.addStopCondition((gen, evaluations, elapsedNanos) -> bestFeasible(gen) >= target);
+        Generation last = engine.run();
+        counters.evaluations += engine.getMetrics().poll().evaluations;
+        if (last != null && bestFeasible(last) >= target) {
+            counters.reached++;
+        }
+        return last;
+    }
+
+    /**
+     * @return best fitness of the members that place exactly N shapes, 0 if none do
+     */
+    private static double bestFeasible(Generation gen) {
+        Population population = gen.getPopulation();
+        double best = 0;
+        for (int i = 0; i < population.size; i++) {
+            if (population.fitness[i] > best && population.layout(i).countShapes() == N) {
+                best = population.fitness[i];
+            }
+        }
+        return best;
+    }
+}
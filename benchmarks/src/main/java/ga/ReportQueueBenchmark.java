@@ -0,0 +1,116 @@
+package ga;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * How fast the engine takes in a generation's worth of factory reports in the thread modes. Every operation is one
+ * round: a few producer threads put the ids of k factories between them and the benchmark thread, standing in for
+ * the engine, takes all k. queue is the ArrayBlockingQueue the engine used to poll one id at a time, ring is IdRing
+ * drained in batches. reports per second is ops/s * k.
+ *
+ * the producers wait on a Phaser between rounds the way the factories wait on the scheduler, that cost is the same
+ * for both
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ReportQueueBenchmark {
+
+    private static final int PRODUCERS = 4;
+
+    @Param({"queue", "ring"})
+    String impl;
+
+    @Param({"32", "256", "4096"})
+    int k;
+
+    private BlockingQueue<Integer> queue;
+    private IdRing ring;
+    private int[] ready;
+    private Phaser round;
+    private Thread[] producers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new ArrayBlockingQueue<>(k);
+        ring = new IdRing(k);
+        ready = new int[k];
+        round = new Phaser(PRODUCERS + 1);
+        producers = new Thread[PRODUCERS];
+        boolean useRing = impl.equals("ring");
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p;
+            producers[p] = new Thread(() -> produce(first, useRing), "producer " + p);
+            producers[p].setDaemon(true);
+            producers[p].start();
+        }
+    }
+
+    /**
+     * puts ids first, first + PRODUCERS, ... every round until the phaser is terminated
+     */
+    private void produce(int first, boolean useRing) {
+        try {
+            while (round.arriveAndAwaitAdvance() >= 0) {
+                for (int id = first; id < k; id += PRODUCERS) {
+                    if (useRing) {
+                        ring.put(id);
+                    } else {
+                        queue.put(id);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        round.forceTermination();
+        for (Thread producer : producers) {
+            producer.join(5000);
+        }
+    }
+
+    @Benchmark
+    public int round() throws InterruptedException {
+        round.arrive();//release the producers
+        return impl.equals("ring") ? ringRound() : queueRound();
+    }
+
+    private int queueRound() throws InterruptedException {
+        int sum = 0;
+        for (int taken = 0; taken < k; taken++) {//one lock round trip per report, like the engine's old loop
+            Integer id = queue.poll(5, TimeUnit.SECONDS);
+            if (id == null) {
+                throw new IllegalStateException("producers stopped reporting");
+            }
+            sum += id;
+        }
+        return sum;
+    }
+
+    private int ringRound() throws InterruptedException {
+        int sum = 0;
+        for (int taken = 0; taken < k; ) {//everything that is ready in one pass
+            int count = ring.drain(ready, 5, TimeUnit.SECONDS);
+            if (count == 0) {
+                throw new IllegalStateException("producers stopped reporting");
+            }
+            for (int r = 0; r < count; r++) {
+                sum += ready[r];
+            }
+            taken += count;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,54 @@
+package ga;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The per factory hot paths: evolving a generation, picking the survivor and creating the first layout
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ShapeFactoryBenchmark {
+
+    @Param({"7", "64"})
+    int size;
+
+    @Param({"ROULETTE", "TOURNAMENT", "RANK"})
+    ShapeFactory.Selection selection;
+
+    private ShapeFactory factory;
+    private int shapes;
+    private final SplittableRandom random = new SplittableRandom(375);
+
+    @Setup
+    public void setup() throws InterruptedException {
+        shapes = size * size * 32 / 49;//same density as 32 shapes in 7x7
+        factory = new ShapeFactory(0, shapes, size, size);
+        factory.setSelection(selection);
+        factory.setRandom(random.split());
+        factory.step();//first generation, creates the layout
+        factory.evolve(10);//fills the child buffers selection reads
+    }
+
+    @Benchmark
+    public double evolve() {
+        factory.evolve(10);
+        return factory.getFitness();
+    }
+
+    @Benchmark
+    public int select() {
+        return factory.select(factory.getChildOrder(), 7, random);
+    }
+
+    @Benchmark
+    public PackedLayout generate() {
+        return factory.generate(shapes, size * size);
+    }
+}